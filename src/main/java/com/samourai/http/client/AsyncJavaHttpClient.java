@@ -0,0 +1,361 @@
+package com.samourai.http.client;
+
+import com.samourai.tor.client.JavaTorConnexion;
+import com.samourai.wallet.api.backend.beans.HttpException;
+import com.samourai.whirlpool.cli.beans.CliProxy;
+import com.samourai.whirlpool.cli.config.CliConfig;
+import com.samourai.whirlpool.cli.services.CircuitBreakerService;
+import com.samourai.whirlpool.cli.services.CliTorClientService;
+import com.samourai.whirlpool.cli.utils.CliUtils;
+import com.samourai.whirlpool.cli.utils.JsonRegistry;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.client.util.FormContentProvider;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.util.Fields;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+
+/**
+ * Non-blocking http client: requests are sent asynchronously by jetty, no thread is waiting while
+ * they are in flight over TOR. Failures complete futures with HttpException.
+ */
+public class AsyncJavaHttpClient {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final long CACHE_MAX_BYTES = 10 * 1024 * 1024;
+  private static final int RESPONSE_MAX_LENGTH = 2 * 1024 * 1024;
+  // large wallet payloads (thousands of utxos)
+  private static final Pattern WALLET_PATTERN = Pattern.compile("/(unspent|multiaddr)");
+  private static final int WALLET_RESPONSE_MAX_LENGTH = 32 * 1024 * 1024;
+
+  private CliTorClientService torClientService;
+  private CliConfig cliConfig;
+  private CircuitBreakerService circuitBreakerService;
+  private JsonRegistry jsonRegistry;
+  private HttpClientRegistry httpClientRegistry;
+  private HttpResponseCache responseCache;
+  private SingleFlight<String, Object> singleFlight;
+  private HttpRetryHandler retryHandler;
+
+  public AsyncJavaHttpClient(
+      CliTorClientService torClientService,
+      CliConfig cliConfig,
+      CircuitBreakerService circuitBreakerService,
+      JsonRegistry jsonRegistry) {
+    this.torClientService = torClientService;
+    this.cliConfig = cliConfig;
+    this.circuitBreakerService = circuitBreakerService;
+    this.jsonRegistry = jsonRegistry;
+    this.httpClientRegistry = new HttpClientRegistry("http");
+    this.responseCache = new HttpResponseCache(CACHE_MAX_BYTES, computeCachePolicies());
+    this.singleFlight = new SingleFlight<>();
+    this.retryHandler = new HttpRetryHandler(computeRetryPolicies());
+
+    // new TOR identity => don't reuse connexions bound to old circuits
+    torClientService.addIdentityListener(torConnexions -> recycle(torConnexions));
+  }
+
+  // recycle clients of renewed connexions only, or every client when a route is unknown
+  private void recycle(Collection<JavaTorConnexion> torConnexions) {
+    Optional<Collection<String>> routes = HttpClientRegistry.computeRoutes(torConnexions);
+    if (routes.isPresent()) {
+      httpClientRegistry.recycle(routes.get());
+    } else {
+      httpClientRegistry.recycle();
+    }
+  }
+
+  public <T> CompletableFuture<T> getJson(String urlStr, Class<T> responseType) {
+    // concurrent identical requests share the same call and parsed result
+    String key = urlStr + "|" + (responseType != null ? responseType.getName() : null);
+    CompletableFuture<Object> future =
+        singleFlight.submit(
+            key,
+            () -> {
+              return responseCache
+                  .getAsync(
+                      urlStr,
+                      ifNoneMatch ->
+                          retryHandler.execute(
+                              urlStr,
+                              alternate ->
+                                  abortable(
+                                      attempt -> fetch(urlStr, ifNoneMatch, alternate, attempt))))
+                  .thenApply(content -> parseResponse(content, responseType));
+            });
+    @SuppressWarnings("unchecked")
+    CompletableFuture<T> result = future.thenApply(value -> (T) value);
+    return handleErrors(result, "getJson", urlStr);
+  }
+
+  public <T> CompletableFuture<T> postJsonOverTor(
+      String urlStr, Class<T> responseType, Object bodyObj) {
+    CompletableFuture<T> future =
+        withCircuitBreaker(
+                urlStr,
+                () ->
+                    newRequest(true, false, urlStr, HttpMethod.POST)
+                        .thenCompose(
+                            request -> {
+                              try {
+                                String jsonBody =
+                                    jsonRegistry
+                                        .getWriter(bodyObj.getClass())
+                                        .writeValueAsString(bodyObj);
+                                request.content(
+                                    new StringContentProvider(
+                                        MediaType.APPLICATION_JSON_VALUE,
+                                        jsonBody,
+                                        StandardCharsets.UTF_8));
+                              } catch (Exception e) {
+                                throw new CompletionException(e);
+                              }
+                              return send(request);
+                            }))
+            .thenApply(
+                response -> {
+                  responseCache.invalidateHost(urlStr);
+                  return parseResponse(response.getContent(), responseType);
+                });
+    return handleErrors(future, "postJsonOverTor", urlStr);
+  }
+
+  public <T> CompletableFuture<T> postUrlEncoded(
+      String urlStr, Class<T> responseType, Map<String, String> body) {
+    // never retried: a pushtx failing after broadcast would fail again with "already in mempool"
+    CompletableFuture<T> future =
+        withCircuitBreaker(
+                urlStr,
+                () ->
+                    newRequest(false, false, urlStr, HttpMethod.POST)
+                        .thenCompose(
+                            request -> {
+                              Fields fields = computeBodyFields(body);
+                              request.content(new FormContentProvider(fields));
+                              return send(request);
+                            }))
+            .thenApply(
+                response -> {
+                  checkServerError(response, urlStr);
+                  responseCache.invalidateHost(urlStr); // pushtx modifies utxos
+                  return parseResponse(response.getContent(), responseType);
+                });
+    return handleErrors(future, "postUrlEncoded", urlStr);
+  }
+
+  private CompletableFuture<HttpResponseCache.Response> fetch(
+      String urlStr, Optional<String> ifNoneMatch, boolean alternate, AbortableAttempt attempt) {
+    return withCircuitBreaker(
+        urlStr,
+        () ->
+            newRequest(false, alternate, urlStr, HttpMethod.GET)
+                .thenCompose(
+                    request -> {
+                      if (ifNoneMatch.isPresent()) {
+                        request.header(HttpHeader.IF_NONE_MATCH, ifNoneMatch.get());
+                      }
+                      attempt.setRequest(request);
+                      return send(request);
+                    })
+                .thenApply(
+                    response -> {
+                      checkServerError(response, urlStr);
+                      return response;
+                    }));
+  }
+
+  private void checkServerError(HttpResponseCache.Response response, String urlStr) {
+    if (response.getStatus() >= 500) {
+      String body = new String(response.getContent(), StandardCharsets.UTF_8);
+      throw new CompletionException(
+          new HttpException(new HttpServerErrorException(response.getStatus(), urlStr), body));
+    }
+  }
+
+  // jetty request is aborted when retryHandler cancels the attempt (losing hedged attempt)
+  private <T> CompletableFuture<T> abortable(
+      Function<AbortableAttempt, CompletableFuture<T>> call) {
+    AbortableAttempt attempt = new AbortableAttempt();
+    CompletableFuture<T> future = call.apply(attempt);
+    future.whenComplete(
+        (value, e) -> {
+          if (future.isCancelled()) {
+            attempt.abort();
+          }
+        });
+    return future;
+  }
+
+  private CompletableFuture<Request> newRequest(
+      boolean isRegisterOutput, boolean alternate, String urlStr, HttpMethod method) {
+    // wait for TOR without blocking
+    return computeProxy(isRegisterOutput, alternate)
+        .thenApply(
+            cliProxy -> {
+              try {
+                HttpClient httpClient = httpClientRegistry.getHttpClient(cliProxy);
+                return httpClient.newRequest(urlStr).method(method);
+              } catch (Exception e) {
+                throw new CompletionException(e);
+              }
+            });
+  }
+
+  // fail fast while host is down, network failures only (errors returned by host don't count)
+  private <T> CompletableFuture<T> withCircuitBreaker(
+      String urlStr, Supplier<CompletableFuture<T>> call) {
+    return circuitBreakerService
+        .getCircuitBreaker(urlStr)
+        .executeAsync(call, e -> HttpRetryHandler.isTransient(e));
+  }
+
+  private CompletableFuture<Optional<CliProxy>> computeProxy(
+      boolean isRegisterOutput, boolean alternate) {
+    if (alternate && !isRegisterOutput) {
+      Optional<JavaTorConnexion> torConnexion = torClientService.getTorConnexionAlternate();
+      if (torConnexion.isPresent()) {
+        return torConnexion.get().getReadyFuture().thenApply(torProxy -> Optional.of(torProxy));
+      }
+    }
+    return CliUtils.computeProxyAsync(isRegisterOutput, torClientService, cliConfig.getCliProxy());
+  }
+
+  private CompletableFuture<HttpResponseCache.Response> send(Request request) {
+    CompletableFuture<HttpResponseCache.Response> future = new CompletableFuture<>();
+    int maxLength =
+        WALLET_PATTERN.matcher(request.getURI().toString()).find()
+            ? WALLET_RESPONSE_MAX_LENGTH
+            : RESPONSE_MAX_LENGTH;
+    request.send(
+        new BufferingResponseListener(maxLength) {
+          @Override
+          public void onComplete(Result result) {
+            if (result.isFailed()) {
+              future.completeExceptionally(result.getFailure());
+              return;
+            }
+            future.complete(
+                new HttpResponseCache.Response(
+                    result.getResponse().getStatus(),
+                    getContent(),
+                    result.getResponse().getHeaders().get(HttpHeader.ETAG)));
+          }
+        });
+    return future;
+  }
+
+  private Fields computeBodyFields(Map<String, String> body) {
+    Fields fields = new Fields();
+    for (Map.Entry<String, String> entry : body.entrySet()) {
+      fields.put(entry.getKey(), entry.getValue());
+    }
+    return fields;
+  }
+
+  private <T> T parseResponse(byte[] content, Class<T> responseType) {
+    T result = null;
+    if (responseType != null) {
+      try {
+        result = jsonRegistry.getReader(responseType).readValue(content);
+      } catch (Exception e) {
+        throw new CompletionException(e);
+      }
+    }
+    return result;
+  }
+
+  private <T> CompletableFuture<T> handleErrors(
+      CompletableFuture<T> future, String action, String urlStr) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    future.whenComplete(
+        (value, e) -> {
+          if (e == null) {
+            result.complete(value);
+            return;
+          }
+          Throwable cause =
+              e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+          if (log.isDebugEnabled()) {
+            log.error(action + " failed: " + urlStr, cause);
+          }
+          result.completeExceptionally(computeHttpException(cause));
+        });
+    return result;
+  }
+
+  protected static HttpException computeHttpException(Throwable e) {
+    if (e instanceof HttpException) {
+      return (HttpException) e;
+    }
+    Exception exception = e instanceof Exception ? (Exception) e : new Exception(e);
+    return new HttpException(exception, null);
+  }
+
+  private static List<HttpResponseCache.Policy> computeCachePolicies() {
+    return Arrays.asList(
+        new HttpResponseCache.Policy("/fees", 60000),
+        new HttpResponseCache.Policy("/rest/pools", 30000),
+        // short ttl, utxos are also invalidated on pushtx
+        new HttpResponseCache.Policy("/(unspent|multiaddr)", 5000));
+  }
+
+  private static List<HttpRetryHandler.Policy> computeRetryPolicies() {
+    return Arrays.asList(
+        // idempotent GETs: retried and hedged
+        new HttpRetryHandler.Policy("/(unspent|multiaddr|fees)", 3, 500, 5000, true),
+        new HttpRetryHandler.Policy("/rest/pools", 3, 500, 5000, true));
+  }
+
+  public CompletableFuture<Void> warmUp(Optional<CliProxy> cliProxy, String urlStr) {
+    return httpClientRegistry.warmUp(cliProxy, urlStr);
+  }
+
+  public HttpResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  public HttpRetryHandler getRetryHandler() {
+    return retryHandler;
+  }
+
+  /** Jetty request of one attempt, aborted when attempt is cancelled. */
+  private static class AbortableAttempt {
+    private Request request;
+    private boolean aborted;
+
+    public synchronized void setRequest(Request request) {
+      if (aborted) {
+        // cancelled before request was created
+        request.abort(new CancellationException("attempt cancelled"));
+        return;
+      }
+      this.request = request;
+    }
+
+    public synchronized void abort() {
+      aborted = true;
+      if (request != null) {
+        // release TOR stream and stop downloading body
+        request.abort(new CancellationException("attempt cancelled"));
+      }
+    }
+  }
+}
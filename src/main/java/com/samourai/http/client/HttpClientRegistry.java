@@ -0,0 +1,180 @@
+package com.samourai.http.client;
+
+import com.samourai.tor.client.JavaTorConnexion;
+import com.samourai.whirlpool.cli.beans.CliProxy;
+import com.samourai.whirlpool.cli.utils.CliUtils;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Long-lived jetty clients, one per route (direct, proxy, or each TOR connexion). Clients are
+ * started once and reused, so connexions are kept alive between requests.
+ */
+public class HttpClientRegistry {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final String ROUTE_DIRECT = "direct";
+  private static final int IDLE_TIMEOUT = 60000;
+  private static final int CONNECT_TIMEOUT = 30000;
+  private static final int MAX_CONNECTIONS_PER_DESTINATION = 8;
+  private static final int MAX_THREADS = 16;
+  private static final int RECYCLE_GRACE_DELAY = 60000;
+
+  private final String name;
+  private Map<String, HttpClient> httpClients;
+
+  public HttpClientRegistry(String name) {
+    this.name = name;
+    this.httpClients = new ConcurrentHashMap<>();
+  }
+
+  public HttpClient getHttpClient(Optional<CliProxy> cliProxy) throws Exception {
+    String route = computeRoute(cliProxy);
+    HttpClient httpClient = httpClients.get(route);
+    if (httpClient == null) {
+      synchronized (this) {
+        httpClient = httpClients.get(route);
+        if (httpClient == null) {
+          httpClient = computeHttpClient(cliProxy, route);
+          httpClients.put(route, httpClient);
+        }
+      }
+    }
+    return httpClient;
+  }
+
+  private HttpClient computeHttpClient(Optional<CliProxy> cliProxy, String route)
+      throws Exception {
+    if (log.isDebugEnabled()) {
+      log.debug("[" + name + "] new HttpClient for route: " + route);
+    }
+    HttpClient httpClient = CliUtils.computeHttpClient(cliProxy);
+
+    // keep connexions alive between requests
+    httpClient.setIdleTimeout(IDLE_TIMEOUT);
+    httpClient.setConnectTimeout(CONNECT_TIMEOUT);
+    httpClient.setMaxConnectionsPerDestination(MAX_CONNECTIONS_PER_DESTINATION);
+
+    // bounded daemon threads, shared by all requests on this route
+    QueuedThreadPool threadPool = new QueuedThreadPool(MAX_THREADS, 1);
+    threadPool.setName(name + "-" + route);
+    threadPool.setDaemon(true);
+    httpClient.setExecutor(threadPool);
+
+    httpClient.start();
+    return httpClient;
+  }
+
+  /** Open a keep-alive connexion to url on this route, before a request needs it. */
+  public CompletableFuture<Void> warmUp(Optional<CliProxy> cliProxy, String urlStr) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    try {
+      HttpClient httpClient = getHttpClient(cliProxy);
+      httpClient
+          .newRequest(urlStr)
+          .method(HttpMethod.HEAD)
+          .send(
+              result -> {
+                if (result.isFailed()) {
+                  future.completeExceptionally(result.getFailure());
+                } else {
+                  future.complete(null);
+                }
+              });
+    } catch (Exception e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /** Stop and forget every client: next requests will open new connexions (and TOR circuits). */
+  public synchronized void recycle() {
+    recycle(getRoutes());
+  }
+
+  /** Stop and forget clients of these routes only, clients of other routes are kept. */
+  public synchronized void recycle(Collection<String> routes) {
+    Collection<HttpClient> oldHttpClients = forget(routes);
+    if (oldHttpClients.isEmpty()) {
+      return;
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("[" + name + "] recycling " + oldHttpClients.size() + " HttpClient(s)");
+    }
+    stopLater(oldHttpClients);
+  }
+
+  /** Forget clients of these routes without stopping them: caller stops them when unused. */
+  public synchronized Collection<HttpClient> forget(Collection<String> routes) {
+    Collection<HttpClient> oldHttpClients = new ArrayList<>();
+    for (String route : routes) {
+      HttpClient httpClient = httpClients.remove(route);
+      if (httpClient != null) {
+        oldHttpClients.add(httpClient);
+      }
+    }
+    return oldHttpClients;
+  }
+
+  public synchronized Collection<String> getRoutes() {
+    return new ArrayList<>(httpClients.keySet());
+  }
+
+  /** Stop clients after a grace delay, letting in-flight requests complete. */
+  public void stopLater(Collection<HttpClient> oldHttpClients) {
+    new Thread(
+            () -> {
+              try {
+                Thread.sleep(RECYCLE_GRACE_DELAY);
+              } catch (InterruptedException e) {
+              }
+              for (HttpClient httpClient : oldHttpClients) {
+                stop(httpClient);
+              }
+            },
+            name + "-recycle")
+        .start();
+  }
+
+  private void stop(HttpClient httpClient) {
+    try {
+      httpClient.stop();
+    } catch (Exception e) {
+      if (log.isDebugEnabled()) {
+        log.error("", e);
+      }
+    }
+  }
+
+  public static String computeRoute(Optional<CliProxy> cliProxy) {
+    return cliProxy.isPresent() ? cliProxy.get().toString() : ROUTE_DIRECT;
+  }
+
+  /** @return routes of these TOR connexions, or empty when a route is unknown (TOR not ready) */
+  public static Optional<Collection<String>> computeRoutes(
+      Collection<JavaTorConnexion> torConnexions) {
+    Collection<String> routes = new ArrayList<>();
+    for (JavaTorConnexion torConnexion : torConnexions) {
+      CliProxy torProxy = null;
+      try {
+        torProxy = torConnexion.getReadyFuture().getNow(null);
+      } catch (Exception e) {
+        // TOR failed to start
+      }
+      if (torProxy == null) {
+        return Optional.empty();
+      }
+      routes.add(computeRoute(Optional.of(torProxy)));
+    }
+    return Optional.of(routes);
+  }
+}
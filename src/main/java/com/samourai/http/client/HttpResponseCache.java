@@ -0,0 +1,247 @@
+package com.samourai.http.client;
+
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory cache of GET responses. Each URL pattern has its own TTL, expired responses are
+ * revalidated with If-None-Match when server provided an ETag. Memory is bounded by evicting least
+ * recently used responses.
+ */
+public class HttpResponseCache {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  public static final int STATUS_OK = 200;
+  public static final int STATUS_NOT_MODIFIED = 304;
+
+  private long maxBytes;
+  private List<Policy> policies;
+  private LinkedHashMap<String, Entry> entries; // access-ordered for LRU
+  private long nbBytes;
+
+  private long nbHits;
+  private long nbMisses;
+  private long nbRevalidations;
+  private long nbEvictions;
+
+  public HttpResponseCache(long maxBytes, List<Policy> policies) {
+    this.maxBytes = maxBytes;
+    this.policies = policies;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.nbBytes = 0;
+  }
+
+  /** Get response content from cache, or from fetcher when missing or expired. */
+  public CompletableFuture<byte[]> getAsync(String url, AsyncFetcher fetcher) {
+    Optional<Long> ttl = computeTtl(url);
+    if (!ttl.isPresent()) {
+      // not cacheable
+      return fetcher.fetch(Optional.empty()).thenApply(response -> response.getContent());
+    }
+    Entry entry = getEntry(url);
+    if (entry != null && entry.isFresh()) {
+      return CompletableFuture.completedFuture(entry.content);
+    }
+    return fetcher
+        .fetch(computeIfNoneMatch(entry))
+        .thenApply(response -> onResponse(url, ttl.get(), entry, response));
+  }
+
+  private synchronized Entry getEntry(String url) {
+    Entry entry = entries.get(url);
+    if (entry != null && entry.isFresh()) {
+      nbHits++;
+    }
+    return entry;
+  }
+
+  private Optional<String> computeIfNoneMatch(Entry entry) {
+    // revalidate expired response
+    return entry != null ? Optional.ofNullable(entry.etag) : Optional.empty();
+  }
+
+  private synchronized byte[] onResponse(String url, long ttl, Entry entry, Response response) {
+    if (response.getStatus() == STATUS_NOT_MODIFIED && entry != null) {
+      nbHits++;
+      nbRevalidations++;
+      entry.expiresAt = System.currentTimeMillis() + ttl;
+      put(url, entry); // most recently used
+      return entry.content;
+    }
+    nbMisses++;
+    if (response.getStatus() == STATUS_OK && response.getContent() != null) {
+      put(url, new Entry(response.getContent(), response.getETag(), ttl));
+    }
+    return response.getContent();
+  }
+
+  private void put(String url, Entry entry) {
+    remove(url);
+    if (entry.content.length > maxBytes) {
+      return;
+    }
+    entries.put(url, entry);
+    nbBytes += entry.content.length;
+
+    // evict least recently used
+    Iterator<Entry> it = entries.values().iterator();
+    while (nbBytes > maxBytes && it.hasNext()) {
+      Entry eldest = it.next();
+      nbBytes -= eldest.content.length;
+      it.remove();
+      nbEvictions++;
+    }
+  }
+
+  private void remove(String url) {
+    Entry previous = entries.remove(url);
+    if (previous != null) {
+      nbBytes -= previous.content.length;
+    }
+  }
+
+  /** Forget responses from the host of this url (after a POST modifying server state). */
+  public synchronized void invalidateHost(String url) {
+    String origin = computeOrigin(url);
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    int nbInvalidated = 0;
+    while (it.hasNext()) {
+      Map.Entry<String, Entry> e = it.next();
+      if (origin.equals(computeOrigin(e.getKey()))) {
+        nbBytes -= e.getValue().content.length;
+        it.remove();
+        nbInvalidated++;
+      }
+    }
+    if (log.isDebugEnabled() && nbInvalidated > 0) {
+      log.debug("invalidated " + nbInvalidated + " responses for " + origin);
+    }
+  }
+
+  public synchronized void invalidateAll() {
+    entries.clear();
+    nbBytes = 0;
+  }
+
+  private String computeOrigin(String url) {
+    try {
+      URI uri = new URI(url);
+      return uri.getScheme() + "://" + uri.getAuthority();
+    } catch (Exception e) {
+      return url;
+    }
+  }
+
+  private Optional<Long> computeTtl(String url) {
+    for (Policy policy : policies) {
+      if (policy.pattern.matcher(url).find()) {
+        return Optional.of(policy.ttl);
+      }
+    }
+    return Optional.empty();
+  }
+
+  public synchronized long getNbHits() {
+    return nbHits;
+  }
+
+  public synchronized long getNbMisses() {
+    return nbMisses;
+  }
+
+  public synchronized long getNbRevalidations() {
+    return nbRevalidations;
+  }
+
+  public synchronized long getNbEvictions() {
+    return nbEvictions;
+  }
+
+  public synchronized long getNbBytes() {
+    return nbBytes;
+  }
+
+  public synchronized int getNbEntries() {
+    return entries.size();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "hits="
+        + nbHits
+        + ", misses="
+        + nbMisses
+        + ", revalidations="
+        + nbRevalidations
+        + ", evictions="
+        + nbEvictions
+        + ", entries="
+        + entries.size()
+        + ", bytes="
+        + nbBytes;
+  }
+
+  /** TTL of responses for urls matching a regex. */
+  public static class Policy {
+    private Pattern pattern;
+    private long ttl;
+
+    public Policy(String regex, long ttl) {
+      this.pattern = Pattern.compile(regex);
+      this.ttl = ttl;
+    }
+  }
+
+  /** Fetch response from server, with If-None-Match header when present. */
+  public interface AsyncFetcher {
+    CompletableFuture<Response> fetch(Optional<String> ifNoneMatch);
+  }
+
+  public static class Response {
+    private int status;
+    private byte[] content;
+    private String etag;
+
+    public Response(int status, byte[] content, String etag) {
+      this.status = status;
+      this.content = content;
+      this.etag = etag;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    public byte[] getContent() {
+      return content;
+    }
+
+    public String getETag() {
+      return etag;
+    }
+  }
+
+  private static class Entry {
+    private byte[] content;
+    private String etag;
+    private long expiresAt;
+
+    Entry(byte[] content, String etag, long ttl) {
+      this.content = content;
+      this.etag = etag;
+      this.expiresAt = System.currentTimeMillis() + ttl;
+    }
+
+    boolean isFresh() {
+      return System.currentTimeMillis() < expiresAt;
+    }
+  }
+}
@@ -0,0 +1,249 @@
+package com.samourai.http.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.samourai.wallet.api.backend.beans.HttpException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries transient failures with decorrelated jitter backoff. Idempotent requests are hedged: when
+ * an attempt is slower than usual, a second attempt is sent on an alternate circuit and the first
+ * success wins. The losing attempt is cancelled.
+ */
+public class HttpRetryHandler {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final Policy POLICY_DEFAULT = new Policy(".*", 1, 0, 0, false);
+  private static final int LATENCY_SAMPLES = 100;
+  private static final int HEDGE_PERCENTILE = 95;
+  private static final long HEDGE_DELAY_MIN = 1000;
+  private static final long HEDGE_DELAY_DEFAULT = 10000;
+
+  private List<Policy> policies;
+  private ScheduledExecutorService scheduler;
+
+  private AtomicLong nbRetries;
+  private AtomicLong nbHedges;
+  private AtomicLong nbHedgeWins;
+
+  public HttpRetryHandler(List<Policy> policies) {
+    this.policies = policies;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "http-retry");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.nbRetries = new AtomicLong();
+    this.nbHedges = new AtomicLong();
+    this.nbHedgeWins = new AtomicLong();
+  }
+
+  /**
+   * @param call sends one attempt, over an alternate circuit when argument is true. Returned future
+   *     is cancelled when another hedged attempt wins.
+   */
+  public <T> CompletableFuture<T> execute(
+      String urlStr, Function<Boolean, CompletableFuture<T>> call) {
+    Policy policy = computePolicy(urlStr);
+    CompletableFuture<T> result = new CompletableFuture<>();
+    attempt(urlStr, policy, call, result, 1, policy.baseDelay);
+    return result;
+  }
+
+  private <T> void attempt(
+      String urlStr,
+      Policy policy,
+      Function<Boolean, CompletableFuture<T>> call,
+      CompletableFuture<T> result,
+      int attemptNumber,
+      long previousDelay) {
+    CompletableFuture<T> attemptResult = new CompletableFuture<>();
+    AtomicInteger nbPending = new AtomicInteger(1);
+    List<CompletableFuture<T>> inFlight = new CopyOnWriteArrayList<>();
+
+    // retry over another circuit, the previous one may be the culprit
+    send(call, attemptNumber > 1, policy, attemptResult, nbPending, inFlight, false);
+
+    if (policy.hedge) {
+      long hedgeDelay = computeHedgeDelay(policy);
+      ScheduledFuture<?> hedgeTimer =
+          scheduler.schedule(
+              () -> {
+                if (!attemptResult.isDone()) {
+                  nbHedges.incrementAndGet();
+                  if (log.isDebugEnabled()) {
+                    log.debug("hedging after " + hedgeDelay + "ms: " + urlStr);
+                  }
+                  nbPending.incrementAndGet();
+                  send(call, true, policy, attemptResult, nbPending, inFlight, true);
+                }
+              },
+              hedgeDelay,
+              TimeUnit.MILLISECONDS);
+      attemptResult.whenComplete((value, e) -> hedgeTimer.cancel(false));
+
+      // first success wins: cancel the other attempt, so that it doesn't hold a circuit
+      attemptResult.thenRun(() -> inFlight.forEach(future -> future.cancel(false)));
+    }
+
+    attemptResult.whenComplete(
+        (value, e) -> {
+          if (e == null) {
+            result.complete(value);
+            return;
+          }
+          if (attemptNumber >= policy.maxAttempts || !isTransient(e)) {
+            result.completeExceptionally(e);
+            return;
+          }
+          long delay = policy.computeDelay(previousDelay);
+          nbRetries.incrementAndGet();
+          if (log.isDebugEnabled()) {
+            log.debug(
+                "retrying in "
+                    + delay
+                    + "ms ("
+                    + (attemptNumber + 1)
+                    + "/"
+                    + policy.maxAttempts
+                    + "): "
+                    + urlStr
+                    + ": "
+                    + e.getMessage());
+          }
+          scheduler.schedule(
+              () -> attempt(urlStr, policy, call, result, attemptNumber + 1, delay),
+              delay,
+              TimeUnit.MILLISECONDS);
+        });
+  }
+
+  private <T> void send(
+      Function<Boolean, CompletableFuture<T>> call,
+      boolean alternate,
+      Policy policy,
+      CompletableFuture<T> attemptResult,
+      AtomicInteger nbPending,
+      List<CompletableFuture<T>> inFlight,
+      boolean isHedge) {
+    long startTime = System.currentTimeMillis();
+    CompletableFuture<T> future;
+    try {
+      future = call.apply(alternate);
+    } catch (Exception e) {
+      future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+    }
+    inFlight.add(future);
+    if (attemptResult.isDone()) {
+      // won by another attempt meanwhile
+      future.cancel(false);
+    }
+    future.whenComplete(
+        (value, e) -> {
+          if (e == null) {
+            policy.latencies.add(System.currentTimeMillis() - startTime);
+            if (attemptResult.complete(value) && isHedge) {
+              nbHedgeWins.incrementAndGet();
+            }
+          } else if (nbPending.decrementAndGet() == 0) {
+            // fail only when every attempt in flight failed
+            attemptResult.completeExceptionally(e);
+          }
+        });
+  }
+
+  private long computeHedgeDelay(Policy policy) {
+    return policy
+        .latencies
+        .getPercentile(HEDGE_PERCENTILE)
+        .map(latency -> Math.max(latency, HEDGE_DELAY_MIN))
+        .orElse(HEDGE_DELAY_DEFAULT);
+  }
+
+  protected static boolean isTransient(Throwable e) {
+    while (e != null) {
+      if (e instanceof JsonProcessingException) {
+        // unexpected response, retrying won't help
+        return false;
+      }
+      // includes HttpServerErrorException
+      if (e instanceof IOException || e instanceof TimeoutException) {
+        return true;
+      }
+      if (!(e instanceof CompletionException
+          || e instanceof ExecutionException
+          || e instanceof HttpException)) {
+        return false;
+      }
+      e = e.getCause();
+    }
+    return false;
+  }
+
+  private Policy computePolicy(String urlStr) {
+    for (Policy policy : policies) {
+      if (policy.pattern.matcher(urlStr).find()) {
+        return policy;
+      }
+    }
+    return POLICY_DEFAULT;
+  }
+
+  public long getNbRetries() {
+    return nbRetries.get();
+  }
+
+  public long getNbHedges() {
+    return nbHedges.get();
+  }
+
+  public long getNbHedgeWins() {
+    return nbHedgeWins.get();
+  }
+
+  /** Retry policy for urls matching a regex. */
+  public static class Policy {
+    private Pattern pattern;
+    private int maxAttempts;
+    private long baseDelay;
+    private long maxDelay;
+    private boolean hedge;
+    private LatencyTracker latencies;
+
+    /** @param hedge only for idempotent requests */
+    public Policy(String regex, int maxAttempts, long baseDelay, long maxDelay, boolean hedge) {
+      this.pattern = Pattern.compile(regex);
+      this.maxAttempts = maxAttempts;
+      this.baseDelay = baseDelay;
+      this.maxDelay = maxDelay;
+      this.hedge = hedge;
+      this.latencies = new LatencyTracker(LATENCY_SAMPLES);
+    }
+
+    // decorrelated jitter: random between base and 3x previous delay, capped
+    protected long computeDelay(long previousDelay) {
+      long upper = Math.max(baseDelay + 1, previousDelay * 3);
+      long delay = ThreadLocalRandom.current().nextLong(baseDelay, upper);
+      return Math.min(maxDelay, delay);
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package com.samourai.http.client;
+
+import java.io.IOException;
+
+/** HTTP 5xx response: server may answer next attempt. */
+public class HttpServerErrorException extends IOException {
+  private int status;
+
+  public HttpServerErrorException(int status, String urlStr) {
+    super("HTTP " + status + ": " + urlStr);
+    this.status = status;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+}
@@ -1,126 +1,72 @@
 package com.samourai.http.client;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.samourai.wallet.api.backend.beans.HttpException;
 import com.samourai.whirlpool.cli.config.CliConfig;
+import com.samourai.whirlpool.cli.services.CircuitBreakerService;
 import com.samourai.whirlpool.cli.services.CliTorClientService;
-import com.samourai.whirlpool.cli.utils.CliUtils;
-import java.lang.invoke.MethodHandles;
-import java.nio.charset.StandardCharsets;
+import com.samourai.whirlpool.cli.utils.JsonRegistry;
 import java.util.Map;
-import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.client.api.ContentResponse;
-import org.eclipse.jetty.client.api.Request;
-import org.eclipse.jetty.client.util.FormContentProvider;
-import org.eclipse.jetty.client.util.StringContentProvider;
-import org.eclipse.jetty.util.Fields;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.http.MediaType;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/** Blocking IHttpClient, waiting for AsyncJavaHttpClient. */
 public class JavaHttpClient implements IHttpClient {
-  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  // covers TOR startup (up to 4min) + retries
+  private static final long WAIT_TIMEOUT = 300000;
 
-  private CliTorClientService torClientService;
-  private CliConfig cliConfig;
-  private ObjectMapper objectMapper;
+  private AsyncJavaHttpClient asyncClient;
 
-  public JavaHttpClient(CliTorClientService torClientService, CliConfig cliConfig) {
-    this.torClientService = torClientService;
-    this.cliConfig = cliConfig;
-    this.objectMapper = new ObjectMapper();
-    objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+  public JavaHttpClient(
+      CliTorClientService torClientService,
+      CliConfig cliConfig,
+      CircuitBreakerService circuitBreakerService,
+      JsonRegistry jsonRegistry) {
+    this.asyncClient =
+        new AsyncJavaHttpClient(torClientService, cliConfig, circuitBreakerService, jsonRegistry);
   }
 
   @Override
   public <T> T getJson(String urlStr, Class<T> responseType) throws HttpException {
-    try {
-      HttpClient httpClient = computeHttpClient(false);
-      ContentResponse response = httpClient.GET(urlStr);
-
-      T result = parseResponse(response, responseType);
-      return result;
-    } catch (Exception e) {
-      if (log.isDebugEnabled()) {
-        log.error("getJson failed: " + urlStr, e);
-      }
-      if (!(e instanceof HttpException)) {
-        e = new HttpException(e, null);
-      }
-      throw (HttpException) e;
-    }
+    return waitResult(asyncClient.getJson(urlStr, responseType));
   }
 
   @Override
   public <T> T postJsonOverTor(String urlStr, Class<T> responseType, Object bodyObj)
       throws HttpException {
-    try {
-      HttpClient httpClient = computeHttpClient(true);
-      Request request = httpClient.POST(urlStr);
-
-      String jsonBody = objectMapper.writeValueAsString(bodyObj);
-      request.content(
-          new StringContentProvider(
-              MediaType.APPLICATION_JSON_VALUE, jsonBody, StandardCharsets.UTF_8));
-      ContentResponse response = request.send();
-
-      T result = parseResponse(response, responseType);
-      return result;
-    } catch (Exception e) {
-      if (log.isDebugEnabled()) {
-        log.error("postJsonOverTor failed: " + urlStr, e);
-      }
-      if (!(e instanceof HttpException)) {
-        e = new HttpException(e, null);
-      }
-      throw (HttpException) e;
-    }
+    return waitResult(asyncClient.postJsonOverTor(urlStr, responseType, bodyObj));
   }
 
   @Override
   public <T> T postUrlEncoded(String urlStr, Class<T> responseType, Map<String, String> body)
       throws HttpException {
-    try {
-      HttpClient httpClient = computeHttpClient(false);
-      Request request = httpClient.POST(urlStr);
-
-      request.content(new FormContentProvider(computeBodyFields(body)));
-      ContentResponse response = request.send();
+    return waitResult(asyncClient.postUrlEncoded(urlStr, responseType, body));
+  }
 
-      T result = parseResponse(response, responseType);
-      return result;
-    } catch (Exception e) {
-      if (log.isDebugEnabled()) {
-        log.error("postUrlEncoded failed: " + urlStr, e);
-      }
-      if (!(e instanceof HttpException)) {
-        e = new HttpException(e, null);
-      }
-      throw (HttpException) e;
+  private <T> T waitResult(CompletableFuture<T> future) throws HttpException {
+    try {
+      return future.get(WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      throw AsyncJavaHttpClient.computeHttpException(e.getCause());
+    } catch (TimeoutException e) {
+      // stop waiting, call in flight may still be shared with other callers
+      throw AsyncJavaHttpClient.computeHttpException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw AsyncJavaHttpClient.computeHttpException(e);
     }
   }
 
-  private Fields computeBodyFields(Map<String, String> body) {
-    Fields fields = new Fields();
-    for (Map.Entry<String, String> entry : body.entrySet()) {
-      fields.put(entry.getKey(), entry.getValue());
-    }
-    return fields;
+  public AsyncJavaHttpClient getAsyncClient() {
+    return asyncClient;
   }
 
-  private <T> T parseResponse(ContentResponse response, Class<T> responseType) throws Exception {
-    T result = null;
-    if (responseType != null) {
-      result = objectMapper.readValue(response.getContent(), responseType);
-    }
-    return result;
+  public HttpResponseCache getResponseCache() {
+    return asyncClient.getResponseCache();
   }
 
-  private HttpClient computeHttpClient(boolean isRegisterOutput) throws Exception {
-    HttpClient httpClient =
-        CliUtils.computeHttpClient(isRegisterOutput, torClientService, cliConfig.getCliProxy());
-    httpClient.start();
-    return httpClient;
+  public HttpRetryHandler getRetryHandler() {
+    return asyncClient.getRetryHandler();
   }
 }
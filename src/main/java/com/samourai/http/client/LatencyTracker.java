@@ -0,0 +1,45 @@
+package com.samourai.http.client;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/** Latencies of the last successful requests, for computing percentiles. */
+public class LatencyTracker {
+  private static final int MIN_SAMPLES = 10;
+
+  private long[] samples;
+  private int nbSamples;
+  private int next;
+
+  public LatencyTracker(int maxSamples) {
+    this.samples = new long[maxSamples];
+    this.nbSamples = 0;
+    this.next = 0;
+  }
+
+  public synchronized void add(long latency) {
+    samples[next] = latency;
+    next = (next + 1) % samples.length;
+    if (nbSamples < samples.length) {
+      nbSamples++;
+    }
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return empty until enough samples
+   */
+  public synchronized Optional<Long> getPercentile(int percentile) {
+    if (nbSamples < MIN_SAMPLES) {
+      return Optional.empty();
+    }
+    long[] sorted = Arrays.copyOf(samples, nbSamples);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile / 100.0 * nbSamples) - 1;
+    return Optional.of(sorted[Math.max(0, Math.min(index, nbSamples - 1))]);
+  }
+
+  public synchronized int getNbSamples() {
+    return nbSamples;
+  }
+}
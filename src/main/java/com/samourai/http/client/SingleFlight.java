@@ -0,0 +1,64 @@
+package com.samourai.http.client;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent calls: while a call is in flight for a key, other callers for the
+ * same key wait for its result instead of running the call again.
+ */
+public class SingleFlight<K, V> {
+  private Map<K, CompletableFuture<V>> inFlight;
+  private AtomicLong nbCalls;
+  private AtomicLong nbShared;
+
+  public SingleFlight() {
+    this.inFlight = new ConcurrentHashMap<>();
+    this.nbCalls = new AtomicLong();
+    this.nbShared = new AtomicLong();
+  }
+
+  /** Start asynchronous call, or share the same call in flight. */
+  public CompletableFuture<V> submit(K key, Supplier<CompletableFuture<V>> call) {
+    CompletableFuture<V> promise = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+    if (existing != null) {
+      nbShared.incrementAndGet();
+      return existing;
+    }
+
+    nbCalls.incrementAndGet();
+    try {
+      call.get()
+          .whenComplete(
+              (result, e) -> {
+                inFlight.remove(key, promise);
+                if (e != null) {
+                  promise.completeExceptionally(e);
+                } else {
+                  promise.complete(result);
+                }
+              });
+    } catch (Throwable e) {
+      // never leave waiters on a promise which won't complete
+      inFlight.remove(key, promise);
+      promise.completeExceptionally(e);
+    }
+    return promise;
+  }
+
+  public long getNbCalls() {
+    return nbCalls.get();
+  }
+
+  public long getNbShared() {
+    return nbShared.get();
+  }
+
+  public int getNbInFlight() {
+    return inFlight.size();
+  }
+}
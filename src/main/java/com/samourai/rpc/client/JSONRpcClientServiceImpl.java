@@ -1,5 +1,6 @@
 package com.samourai.rpc.client;
 
+import com.samourai.whirlpool.cli.utils.CircuitBreaker;
 import com.samourai.whirlpool.client.wallet.pushTx.PushTxService;
 import java.lang.invoke.MethodHandles;
 import java.net.URL;
@@ -14,10 +15,14 @@ public class JSONRpcClientServiceImpl implements RpcClientService, PushTxService
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private BitcoinJSONRPCClient rpcClient;
   private NetworkParameters params;
+  private CircuitBreaker circuitBreaker;
 
-  public JSONRpcClientServiceImpl(String rpcClientUrl, NetworkParameters params) throws Exception {
+  public JSONRpcClientServiceImpl(
+      String rpcClientUrl, NetworkParameters params, CircuitBreaker circuitBreaker)
+      throws Exception {
     log.info("Instanciating JSONRpcClientServiceImpl");
     this.params = params;
+    this.circuitBreaker = circuitBreaker;
 
     try {
       URL url = new URL(rpcClientUrl);
@@ -34,7 +39,9 @@ public class JSONRpcClientServiceImpl implements RpcClientService, PushTxService
     log.info("Connecting to bitcoin node... url=" + nodeUrl);
     try {
       // verify node connectivity
-      long blockHeight = rpcClient.getBlockCount();
+      long blockHeight =
+          circuitBreaker.execute(
+              () -> rpcClient.getBlockCount(), e -> CircuitBreaker.isNetworkFailure(e));
 
       // verify node network
       String expectedChain = params.getPaymentProtocolId();
@@ -77,7 +84,9 @@ public class JSONRpcClientServiceImpl implements RpcClientService, PushTxService
   @Override
   public Optional<RpcRawTransactionResponse> getRawTransaction(String txid) {
     try {
-      BitcoindRpcClient.RawTransaction rawTx = rpcClient.getRawTransaction(txid);
+      BitcoindRpcClient.RawTransaction rawTx =
+          circuitBreaker.execute(
+              () -> rpcClient.getRawTransaction(txid), e -> CircuitBreaker.isNetworkFailure(e));
       if (rawTx == null) {
         return Optional.empty();
       }
@@ -98,7 +107,9 @@ public class JSONRpcClientServiceImpl implements RpcClientService, PushTxService
       log.info("pushTx tx..." + txHex);
     }
     try {
-      rpcClient.sendRawTransaction(txHex);
+      // RPC errors (invalid tx...) don't open circuit
+      circuitBreaker.execute(
+          () -> rpcClient.sendRawTransaction(txHex), e -> CircuitBreaker.isNetworkFailure(e));
     } catch (Exception e) {
       log.error("Unable to broadcast tx: " + txHex, e);
       throw new Exception("Unable to broadcast tx: " + txHex);
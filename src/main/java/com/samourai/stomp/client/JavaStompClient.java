@@ -1,45 +1,50 @@
 package com.samourai.stomp.client;
 
+import com.samourai.tor.client.JavaTorConnexion;
+import com.samourai.whirlpool.cli.beans.CliProxy;
 import com.samourai.whirlpool.cli.config.CliConfig;
+import com.samourai.whirlpool.cli.services.CircuitBreakerService;
 import com.samourai.whirlpool.cli.services.CliTorClientService;
+import com.samourai.whirlpool.cli.utils.CircuitBreaker;
 import com.samourai.whirlpool.cli.utils.CliUtils;
-import com.samourai.whirlpool.client.exception.NotifiableException;
 import com.samourai.whirlpool.client.utils.ClientUtils;
 import com.samourai.whirlpool.client.utils.MessageErrorListener;
-import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
-import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.websocket.client.WebSocketClient;
+import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaders;
 import org.springframework.messaging.simp.stomp.StompSession;
 import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.WebSocketHttpHeaders;
-import org.springframework.web.socket.client.jetty.JettyWebSocketClient;
 import org.springframework.web.socket.messaging.WebSocketStompClient;
-import org.springframework.web.socket.sockjs.client.JettyXhrTransport;
-import org.springframework.web.socket.sockjs.client.SockJsClient;
-import org.springframework.web.socket.sockjs.client.Transport;
-import org.springframework.web.socket.sockjs.client.WebSocketTransport;
 
 public class JavaStompClient implements IStompClient {
   private static final Logger log = LoggerFactory.getLogger(JavaStompClient.class);
-  private static final int HEARTBEAT_DELAY = 20000;
 
   private CliTorClientService torClientService;
   private CliConfig cliConfig;
+  private JavaStompTransport stompTransport;
+  private CircuitBreakerService circuitBreakerService;
+  private StompMessageTypeRegistry messageTypeRegistry;
 
   private WebSocketStompClient stompClient;
   private StompSession stompSession;
-
-  public JavaStompClient(CliTorClientService torClientService, CliConfig cliConfig) {
+  private Optional<JavaTorConnexion> torConnexionLease;
+
+  public JavaStompClient(
+      CliTorClientService torClientService,
+      CliConfig cliConfig,
+      JavaStompTransport stompTransport,
+      CircuitBreakerService circuitBreakerService,
+      StompMessageTypeRegistry messageTypeRegistry) {
     this.torClientService = torClientService;
     this.cliConfig = cliConfig;
+    this.stompTransport = stompTransport;
+    this.circuitBreakerService = circuitBreakerService;
+    this.messageTypeRegistry = messageTypeRegistry;
+    this.torConnexionLease = Optional.empty();
   }
 
   @Override
@@ -50,16 +55,29 @@ public class JavaStompClient implements IStompClient {
 
     WebSocketHttpHeaders httpHeaders = computeHttpHeaders();
     StompHeaders stompHeadersObj = computeStompHeaders(stompHeaders);
+    CircuitBreaker circuitBreaker = circuitBreakerService.getCircuitBreaker(url);
     try {
-      this.stompClient = computeStompClient();
-      this.stompSession =
-          stompClient // set stompSession twice, as we need it for getSessionId()
-              .connect(
-                  url,
-                  httpHeaders,
-                  stompHeadersObj,
-                  computeStompSessionHandler(onConnectOnDisconnectListener))
-              .get();
+      // retry with backoff, but fail fast while server is down (network failures only)
+      stompTransport
+          .getReconnectManager()
+          .connect(
+              url,
+              () ->
+                  circuitBreaker.execute(
+                      () -> {
+                        this.stompClient = computeStompClient();
+                        // set stompSession twice, as we need it for getSessionId()
+                        this.stompSession =
+                            stompClient
+                                .connect(
+                                    url,
+                                    httpHeaders,
+                                    stompHeadersObj,
+                                    computeStompSessionHandler(onConnectOnDisconnectListener))
+                                .get();
+                        return stompSession;
+                      },
+                      e -> CircuitBreaker.isNetworkFailure(e)));
     } catch (Exception e) {
       // connexion failed
       disconnect();
@@ -77,7 +95,8 @@ public class JavaStompClient implements IStompClient {
       Map<String, String> stompHeaders,
       final MessageErrorListener<IStompMessage, String> onMessageOnErrorListener) {
     StompHeaders stompHeadersObj = computeStompHeaders(stompHeaders);
-    JavaStompFrameHandler frameHandler = new JavaStompFrameHandler(onMessageOnErrorListener);
+    JavaStompFrameHandler frameHandler =
+        new JavaStompFrameHandler(onMessageOnErrorListener, messageTypeRegistry);
     stompSession.subscribe(stompHeadersObj, frameHandler);
   }
 
@@ -97,22 +116,21 @@ public class JavaStompClient implements IStompClient {
       stompSession = null;
     }
 
-    if (stompClient != null) {
-      try {
-        stompClient.stop();
-      } catch (Exception e) {
-      }
-      stompClient = null;
-    }
+    // stompClient is shared with other sessions, don't stop it
+    releaseStompClient();
+
+    releaseTorConnexion();
   }
 
   private StompSessionHandlerAdapter computeStompSessionHandler(
       final MessageErrorListener<IStompMessage, Throwable> onConnectOnDisconnectListener) {
     return new StompSessionHandlerAdapter() {
+      private boolean connected = false;
 
       @Override
       public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
         super.afterConnected(session, connectedHeaders);
+        connected = true;
         if (log.isDebugEnabled()) {
           log.debug(
               "connected, connectedHeaders=" + connectedHeaders + ", stompSession=" + stompSession);
@@ -138,6 +156,13 @@ public class JavaStompClient implements IStompClient {
       @Override
       public void handleTransportError(StompSession session, Throwable exception) {
         super.handleTransportError(session, exception);
+        if (!connected) {
+          // connexion failure, handled by connect()
+          if (log.isDebugEnabled()) {
+            log.debug(" ! connect failed: " + exception.getMessage());
+          }
+          return;
+        }
         log.error(
             " ! transportError: " + exception.getClass().getName() + ": " + exception.getMessage());
         disconnect();
@@ -151,40 +176,34 @@ public class JavaStompClient implements IStompClient {
   }
 
   private WebSocketStompClient computeStompClient() throws Exception {
-    // enable heartbeat (mandatory to detect client disconnect)
-    ThreadPoolTaskScheduler te = new ThreadPoolTaskScheduler();
-    te.setPoolSize(1);
-    te.setThreadNamePrefix("wss-heartbeat-thread-");
-    te.initialize();
-
-    SockJsClient webSocketClient = computeWebSocketClient();
-    WebSocketStompClient stompClient = new WebSocketStompClient(webSocketClient);
-    stompClient.setMessageConverter(new MappingJackson2MessageConverter());
-    stompClient.setTaskScheduler(te);
-    stompClient.setDefaultHeartbeat(new long[] {HEARTBEAT_DELAY, HEARTBEAT_DELAY});
-    return stompClient;
+    // use a dedicated TOR connexion for this mix when available
+    Optional<JavaTorConnexion> torConnexion = leaseTorConnexion();
+    Optional<CliProxy> cliProxy =
+        torConnexion.isPresent()
+            ? Optional.of(torConnexion.get().getTorProxy())
+            : CliUtils.computeProxy(false, torClientService, cliConfig.getCliProxy());
+    releaseStompClient();
+    return stompTransport.acquireStompClient(cliProxy);
   }
 
-  private HttpClient computeHttpClient() throws NotifiableException {
-    return CliUtils.computeHttpClient(false, torClientService, cliConfig.getCliProxy());
+  private synchronized void releaseStompClient() {
+    if (stompClient != null) {
+      stompTransport.releaseStompClient(stompClient);
+      stompClient = null;
+    }
   }
 
-  private SockJsClient computeWebSocketClient() throws Exception {
-    HttpClient jettyHttpClient = computeHttpClient();
+  private synchronized Optional<JavaTorConnexion> leaseTorConnexion() {
+    releaseTorConnexion();
+    torConnexionLease = torClientService.leaseTorConnexion();
+    return torConnexionLease;
+  }
 
-    if (log.isDebugEnabled()) {
-      log.debug("Using websocket transports: Websocket, XHR");
+  private synchronized void releaseTorConnexion() {
+    if (torConnexionLease.isPresent()) {
+      torClientService.releaseTorConnexion(torConnexionLease.get());
+      torConnexionLease = Optional.empty();
     }
-    JettyWebSocketClient jettyWebSocketClient =
-        new JettyWebSocketClient(new WebSocketClient(jettyHttpClient));
-    List<Transport> webSocketTransports =
-        Arrays.asList(
-            new WebSocketTransport(jettyWebSocketClient), new JettyXhrTransport(jettyHttpClient));
-
-    SockJsClient sockJsClient = new SockJsClient(webSocketTransports);
-    jettyHttpClient.start();
-    jettyWebSocketClient.start();
-    return sockJsClient;
   }
 
   private WebSocketHttpHeaders computeHttpHeaders() {
@@ -1,9 +1,11 @@
 package com.samourai.stomp.client;
 
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.samourai.whirlpool.client.utils.MessageErrorListener;
 import com.samourai.whirlpool.protocol.WhirlpoolProtocol;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Type;
+import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.simp.stomp.StompHeaders;
@@ -12,29 +14,40 @@ public class JavaStompFrameHandler
     implements org.springframework.messaging.simp.stomp.StompFrameHandler {
   private Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private final MessageErrorListener<IStompMessage, String> onMessageOnErrorListener;
+  private final StompMessageTypeRegistry messageTypeRegistry;
 
   public JavaStompFrameHandler(
-      MessageErrorListener<IStompMessage, String> onMessageOnErrorListener) {
+      MessageErrorListener<IStompMessage, String> onMessageOnErrorListener,
+      StompMessageTypeRegistry messageTypeRegistry) {
     this.onMessageOnErrorListener = onMessageOnErrorListener;
+    this.messageTypeRegistry = messageTypeRegistry;
   }
 
   @Override
   public Type getPayloadType(StompHeaders headers) {
-    String messageType = headers.get(WhirlpoolProtocol.HEADER_MESSAGE_TYPE).get(0);
-    try {
-      return Class.forName(messageType);
-    } catch (ClassNotFoundException e) {
-      log.error("unknown message type: " + messageType, e);
-      this.onMessageOnErrorListener.onError("unknown message type: " + messageType);
-      return null;
-    }
+    // raw bytes, decoded by handleFrame() with the reader of message type
+    return byte[].class;
   }
 
   @Override
   public void handleFrame(StompHeaders headers, Object payload) {
-    IStompMessage stompMessage = new JavaStompMessage(headers, payload);
+    String messageType = headers.getFirst(WhirlpoolProtocol.HEADER_MESSAGE_TYPE);
+    Optional<ObjectReader> reader = messageTypeRegistry.getReader(messageType);
+    if (!reader.isPresent()) {
+      log.error("unknown message type: " + messageType);
+      this.onMessageOnErrorListener.onError("unknown message type: " + messageType);
+      return;
+    }
 
-    // payload already deserialized by StompFrameHandler
+    Object message;
+    try {
+      message = reader.get().readValue((byte[]) payload);
+    } catch (Exception e) {
+      log.error("invalid message: " + messageType, e);
+      this.onMessageOnErrorListener.onError("invalid message: " + messageType);
+      return;
+    }
+    IStompMessage stompMessage = new JavaStompMessage(headers, message);
     onMessageOnErrorListener.onMessage(stompMessage);
   }
 }
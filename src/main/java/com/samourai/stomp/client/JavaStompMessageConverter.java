@@ -0,0 +1,40 @@
+package com.samourai.stomp.client;
+
+import com.samourai.whirlpool.cli.utils.JsonRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+
+/**
+ * JSON converter for STOMP frames: incoming payloads are left as raw bytes for
+ * JavaStompFrameHandler, outgoing payloads are written with cached ObjectWriter.
+ */
+public class JavaStompMessageConverter extends MappingJackson2MessageConverter {
+  private JsonRegistry jsonRegistry;
+
+  public JavaStompMessageConverter(JsonRegistry jsonRegistry) {
+    super();
+    this.jsonRegistry = jsonRegistry;
+    setObjectMapper(jsonRegistry.getObjectMapper());
+  }
+
+  @Override
+  protected Object convertFromInternal(
+      Message<?> message, Class<?> targetClass, Object conversionHint) {
+    if (byte[].class.equals(targetClass) && message.getPayload() instanceof byte[]) {
+      return message.getPayload();
+    }
+    return super.convertFromInternal(message, targetClass, conversionHint);
+  }
+
+  @Override
+  protected Object convertToInternal(
+      Object payload, MessageHeaders headers, Object conversionHint) {
+    try {
+      return jsonRegistry.getWriter(payload.getClass()).writeValueAsBytes(payload);
+    } catch (Exception e) {
+      throw new MessageConversionException("Could not write JSON: " + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,249 @@
+package com.samourai.stomp.client;
+
+import com.samourai.http.client.HttpClientRegistry;
+import com.samourai.tor.client.JavaTorConnexion;
+import com.samourai.whirlpool.cli.beans.CliProxy;
+import com.samourai.whirlpool.cli.services.CliTorClientService;
+import com.samourai.whirlpool.cli.utils.JsonRegistry;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.jetty.JettyWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.JettyXhrTransport;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.Transport;
+import org.springframework.web.socket.sockjs.client.TransportRequest;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+import org.springframework.web.socket.sockjs.transport.TransportType;
+
+/**
+ * Websocket transport shared by all JavaStompClient: one heartbeat scheduler, and one jetty client
+ * per route multiplexing STOMP sessions. Each session still opens its own websocket, so new
+ * sessions get new TOR streams. Register-output never goes through STOMP: it keeps its own route
+ * through JavaHttpClient. SockJS transport which last connected on a route is tried first.
+ *
+ * <p>When a TOR identity is renewed, clients of its route are recycled: next sessions get a new
+ * jetty client (no keep-alive connexion of previous circuit is reused), and the old one is stopped
+ * once its last session is released.
+ */
+public class JavaStompTransport {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int HEARTBEAT_DELAY = 20000;
+  private static final String TRANSPORT_WEBSOCKET = "websocket";
+  private static final String TRANSPORT_XHR = "xhr";
+  private static final int RECONNECT_ATTEMPTS = 3;
+  private static final long RECONNECT_DELAY_BASE = 1000;
+  private static final long RECONNECT_DELAY_MAX = 10000;
+
+  private JsonRegistry jsonRegistry;
+  private HttpClientRegistry httpClientRegistry;
+  private ThreadPoolTaskScheduler heartbeatScheduler;
+  private Map<String, WebSocketStompClient> stompClients; // by route and preferred transport
+  private Map<WebSocketStompClient, HttpClient> stompHttpClients; // jetty client of stomp client
+  private Map<HttpClient, Integer> nbSessions; // sessions acquired on each jetty client
+  private Set<HttpClient> recycledHttpClients; // to stop when their last session is released
+  private StompTransportStats stats;
+  private StompReconnectManager reconnectManager;
+
+  public JavaStompTransport(CliTorClientService torClientService, JsonRegistry jsonRegistry) {
+    this.jsonRegistry = jsonRegistry;
+    this.httpClientRegistry = new HttpClientRegistry("stomp");
+    this.heartbeatScheduler = null;
+    this.stompClients = new ConcurrentHashMap<>();
+    this.stompHttpClients = new HashMap<>();
+    this.nbSessions = new HashMap<>();
+    this.recycledHttpClients = new HashSet<>();
+    this.stats = new StompTransportStats();
+    this.reconnectManager =
+        new StompReconnectManager(
+            stats, RECONNECT_ATTEMPTS, RECONNECT_DELAY_BASE, RECONNECT_DELAY_MAX);
+
+    // new TOR identity => don't reuse connexions bound to old circuits
+    torClientService.addIdentityListener(torConnexions -> recycle(torConnexions));
+  }
+
+  /** Stomp client for a new session, to release with releaseStompClient() on disconnect. */
+  public synchronized WebSocketStompClient acquireStompClient(Optional<CliProxy> cliProxy)
+      throws Exception {
+    WebSocketStompClient stompClient = getStompClient(cliProxy);
+    HttpClient httpClient = stompHttpClients.get(stompClient);
+    nbSessions.merge(httpClient, 1, Integer::sum);
+    return stompClient;
+  }
+
+  public synchronized void releaseStompClient(WebSocketStompClient stompClient) {
+    HttpClient httpClient = stompHttpClients.get(stompClient);
+    if (httpClient == null) {
+      return;
+    }
+    Integer nb = nbSessions.computeIfPresent(httpClient, (client, n) -> n > 1 ? n - 1 : null);
+    if (nb == null) {
+      stopIfRecycled(httpClient);
+    }
+  }
+
+  private synchronized WebSocketStompClient getStompClient(Optional<CliProxy> cliProxy)
+      throws Exception {
+    String route = HttpClientRegistry.computeRoute(cliProxy);
+    String preferredTransport = stats.getPreferredTransport(route).orElse(TRANSPORT_WEBSOCKET);
+    String key = route + "|" + preferredTransport;
+    WebSocketStompClient stompClient = stompClients.get(key);
+    if (stompClient == null) {
+      if (log.isDebugEnabled()) {
+        log.debug(
+            "new WebSocketStompClient for route: "
+                + route
+                + ", preferredTransport="
+                + preferredTransport);
+      }
+      HttpClient httpClient = httpClientRegistry.getHttpClient(cliProxy);
+      stompClient = computeStompClient(httpClient, route, preferredTransport);
+      stompClients.put(key, stompClient);
+      stompHttpClients.put(stompClient, httpClient);
+    }
+    return stompClient;
+  }
+
+  // recycle clients of renewed connexions only, or every client when a route is unknown
+  private synchronized void recycle(Collection<JavaTorConnexion> torConnexions) {
+    Collection<String> routes =
+        HttpClientRegistry.computeRoutes(torConnexions).orElse(httpClientRegistry.getRoutes());
+    stompClients.keySet().removeIf(key -> routes.contains(key.substring(0, key.lastIndexOf('|'))));
+    for (HttpClient httpClient : httpClientRegistry.forget(routes)) {
+      // active sessions keep their websocket, only new sessions get a new client
+      recycledHttpClients.add(httpClient);
+      if (!nbSessions.containsKey(httpClient)) {
+        stopIfRecycled(httpClient);
+      }
+    }
+  }
+
+  private void stopIfRecycled(HttpClient httpClient) {
+    if (recycledHttpClients.remove(httpClient)) {
+      if (log.isDebugEnabled()) {
+        log.debug("recycling stomp HttpClient");
+      }
+      stompHttpClients.values().removeIf(client -> client == httpClient);
+      httpClientRegistry.stopLater(Arrays.asList(httpClient));
+    }
+  }
+
+  // start websocket client for this route, and open a connexion to server
+  public CompletableFuture<Void> warmUp(Optional<CliProxy> cliProxy, String urlStr) {
+    try {
+      getStompClient(cliProxy);
+    } catch (Exception e) {
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+    return httpClientRegistry.warmUp(cliProxy, urlStr);
+  }
+
+  private WebSocketStompClient computeStompClient(
+      HttpClient jettyHttpClient, String route, String preferredTransport) throws Exception {
+    SockJsClient webSocketClient =
+        computeWebSocketClient(jettyHttpClient, route, preferredTransport);
+    WebSocketStompClient stompClient = new WebSocketStompClient(webSocketClient);
+    stompClient.setMessageConverter(new JavaStompMessageConverter(jsonRegistry));
+
+    // enable heartbeat (mandatory to detect client disconnect)
+    stompClient.setTaskScheduler(getHeartbeatScheduler());
+    stompClient.setDefaultHeartbeat(new long[] {HEARTBEAT_DELAY, HEARTBEAT_DELAY});
+    return stompClient;
+  }
+
+  private SockJsClient computeWebSocketClient(
+      HttpClient jettyHttpClient, String route, String preferredTransport) throws Exception {
+    JettyWebSocketClient jettyWebSocketClient =
+        new JettyWebSocketClient(new WebSocketClient(jettyHttpClient));
+    JettyXhrTransport xhrTransport = new JettyXhrTransport(jettyHttpClient);
+    Transport webSocket =
+        new StatsTransport(
+            new WebSocketTransport(jettyWebSocketClient), TRANSPORT_WEBSOCKET, route);
+    Transport xhr = new StatsTransport(xhrTransport, TRANSPORT_XHR, route);
+    List<Transport> webSocketTransports =
+        TRANSPORT_XHR.equals(preferredTransport)
+            ? Arrays.asList(xhr, webSocket)
+            : Arrays.asList(webSocket, xhr);
+    if (log.isDebugEnabled()) {
+      log.debug("Using websocket transports: " + webSocketTransports);
+    }
+
+    SockJsClient sockJsClient = new SockJsClient(webSocketTransports);
+    // SockJS info request is always sent over XHR
+    sockJsClient.setInfoReceiver(xhrTransport);
+    jettyWebSocketClient.start();
+    return sockJsClient;
+  }
+
+  public StompTransportStats getStats() {
+    return stats;
+  }
+
+  public StompReconnectManager getReconnectManager() {
+    return reconnectManager;
+  }
+
+  private synchronized ThreadPoolTaskScheduler getHeartbeatScheduler() {
+    if (heartbeatScheduler == null) {
+      heartbeatScheduler = new ThreadPoolTaskScheduler();
+      heartbeatScheduler.setPoolSize(1);
+      heartbeatScheduler.setThreadNamePrefix("wss-heartbeat-thread-");
+      heartbeatScheduler.setDaemon(true);
+      heartbeatScheduler.initialize();
+    }
+    return heartbeatScheduler;
+  }
+
+  // records connect latency of a transport, and the last one connected on each route
+  private class StatsTransport implements Transport {
+    private Transport transport;
+    private String name;
+    private String route;
+
+    public StatsTransport(Transport transport, String name, String route) {
+      this.transport = transport;
+      this.name = name;
+      this.route = route;
+    }
+
+    @Override
+    public List<TransportType> getTransportTypes() {
+      return transport.getTransportTypes();
+    }
+
+    @Override
+    public ListenableFuture<WebSocketSession> connect(
+        TransportRequest request, WebSocketHandler handler) {
+      long startTime = System.currentTimeMillis();
+      ListenableFuture<WebSocketSession> future = transport.connect(request, handler);
+      future.addCallback(
+          session -> stats.onConnect(route, name, System.currentTimeMillis() - startTime),
+          e -> stats.onFailure(route, name));
+      return future;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
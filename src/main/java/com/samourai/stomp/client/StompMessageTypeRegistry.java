@@ -0,0 +1,60 @@
+package com.samourai.stomp.client;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.samourai.whirlpool.cli.utils.JsonRegistry;
+import com.samourai.whirlpool.protocol.WhirlpoolProtocol;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Message types allowed in STOMP frames, with their ObjectReader resolved once per type. Only
+ * concrete classes of the whirlpool protocol are accepted: other names from server headers are
+ * rejected without being loaded.
+ */
+public class StompMessageTypeRegistry {
+  private static final String PROTOCOL_PACKAGE =
+      WhirlpoolProtocol.class.getPackage().getName() + ".";
+
+  private JsonRegistry jsonRegistry;
+  private Map<String, ObjectReader> readers;
+
+  public StompMessageTypeRegistry(JsonRegistry jsonRegistry) {
+    this.jsonRegistry = jsonRegistry;
+    this.readers = new ConcurrentHashMap<>();
+  }
+
+  public Optional<ObjectReader> getReader(String messageType) {
+    if (messageType == null) {
+      return Optional.empty();
+    }
+    ObjectReader reader = readers.get(messageType);
+    if (reader == null) {
+      // unknown types are not cached, so server headers can't grow this map
+      Class<?> type = resolveType(messageType);
+      if (type == null) {
+        return Optional.empty();
+      }
+      reader = readers.computeIfAbsent(messageType, t -> jsonRegistry.getReader(type));
+    }
+    return Optional.of(reader);
+  }
+
+  protected static Class<?> resolveType(String messageType) {
+    if (!messageType.startsWith(PROTOCOL_PACKAGE)) {
+      return null;
+    }
+    try {
+      // don't run static initializers before type is checked
+      Class<?> type =
+          Class.forName(messageType, false, StompMessageTypeRegistry.class.getClassLoader());
+      if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+        return null;
+      }
+      return type;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return null;
+    }
+  }
+}
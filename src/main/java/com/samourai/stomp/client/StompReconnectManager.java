@@ -0,0 +1,64 @@
+package com.samourai.stomp.client;
+
+import com.samourai.whirlpool.cli.exception.CircuitBreakerOpenException;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Retries STOMP connexion with decorrelated jitter backoff, so clients don't reconnect in sync. */
+public class StompReconnectManager {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private StompTransportStats stats;
+  private int maxAttempts;
+  private long baseDelay;
+  private long maxDelay;
+
+  public StompReconnectManager(
+      StompTransportStats stats, int maxAttempts, long baseDelay, long maxDelay) {
+    this.stats = stats;
+    this.maxAttempts = maxAttempts;
+    this.baseDelay = baseDelay;
+    this.maxDelay = maxDelay;
+  }
+
+  public <T> T connect(String url, Callable<T> connectAttempt) throws Exception {
+    long delay = baseDelay;
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return connectAttempt.call();
+      } catch (CircuitBreakerOpenException | InterruptedException e) {
+        throw e;
+      } catch (Exception e) {
+        if (attempt >= maxAttempts) {
+          throw e;
+        }
+        delay = computeDelay(delay);
+        stats.onReconnect();
+        if (log.isDebugEnabled()) {
+          log.debug(
+              "reconnecting in "
+                  + delay
+                  + "ms ("
+                  + (attempt + 1)
+                  + "/"
+                  + maxAttempts
+                  + "): "
+                  + url
+                  + ": "
+                  + e.getMessage());
+        }
+        Thread.sleep(delay);
+      }
+    }
+  }
+
+  // decorrelated jitter: random between base and 3x previous delay, capped
+  protected long computeDelay(long previousDelay) {
+    long upper = Math.max(baseDelay + 1, previousDelay * 3);
+    long delay = ThreadLocalRandom.current().nextLong(baseDelay, upper);
+    return Math.min(maxDelay, delay);
+  }
+}
@@ -0,0 +1,99 @@
+package com.samourai.stomp.client;
+
+import com.samourai.http.client.LatencyTracker;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SockJS transport which last connected on each route, tried first on next connexion. Over TOR,
+ * websocket upgrades often fail: remembering it saves waiting for the websocket timeout before
+ * falling back to XHR on each reconnect.
+ */
+public class StompTransportStats {
+  private static final int LATENCY_SAMPLES = 100;
+
+  private Map<String, String> preferredTransports; // by route
+  private Map<String, TransportStats> transports; // by transport name
+  private AtomicLong nbReconnects;
+
+  public StompTransportStats() {
+    this.preferredTransports = new ConcurrentHashMap<>();
+    this.transports = new ConcurrentHashMap<>();
+    this.nbReconnects = new AtomicLong();
+  }
+
+  public void onConnect(String route, String transport, long latency) {
+    preferredTransports.put(route, transport);
+    TransportStats stats = getTransportStats(transport);
+    stats.nbConnects.incrementAndGet();
+    stats.latencies.add(latency);
+  }
+
+  public void onFailure(String route, String transport) {
+    getTransportStats(transport).nbFailures.incrementAndGet();
+  }
+
+  public void onReconnect() {
+    nbReconnects.incrementAndGet();
+  }
+
+  public Optional<String> getPreferredTransport(String route) {
+    return Optional.ofNullable(preferredTransports.get(route));
+  }
+
+  private TransportStats getTransportStats(String transport) {
+    return transports.computeIfAbsent(transport, name -> new TransportStats(name));
+  }
+
+  public Map<String, String> getPreferredTransports() {
+    return new HashMap<>(preferredTransports);
+  }
+
+  public Collection<TransportStats> getTransports() {
+    return new ArrayList<>(transports.values());
+  }
+
+  public long getNbReconnects() {
+    return nbReconnects.get();
+  }
+
+  /** Connect-latency of a SockJS transport. */
+  public static class TransportStats {
+    private String name;
+    private AtomicLong nbConnects;
+    private AtomicLong nbFailures;
+    private LatencyTracker latencies;
+
+    public TransportStats(String name) {
+      this.name = name;
+      this.nbConnects = new AtomicLong();
+      this.nbFailures = new AtomicLong();
+      this.latencies = new LatencyTracker(LATENCY_SAMPLES);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getNbConnects() {
+      return nbConnects.get();
+    }
+
+    public long getNbFailures() {
+      return nbFailures.get();
+    }
+
+    public Long getLatencyMedian() {
+      return latencies.getPercentile(50).orElse(null);
+    }
+
+    public Long getLatencyP95() {
+      return latencies.getPercentile(95).orElse(null);
+    }
+  }
+}
@@ -3,14 +3,22 @@ package com.samourai.tor.client;
 import com.msopentech.thali.toronionproxy.OsData;
 import com.msopentech.thali.toronionproxy.TorConfig;
 import com.msopentech.thali.toronionproxy.TorSettings;
+import com.samourai.tor.client.utils.TorDataDirectory;
 import com.samourai.whirlpool.cli.config.CliConfig;
 import com.samourai.whirlpool.cli.utils.CliUtils;
 import com.samourai.whirlpool.client.exception.NotifiableException;
 import java.io.File;
 import java.lang.invoke.MethodHandles;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,10 +27,19 @@ public class JavaTorClient {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private static final String TOR_DIR_SHARED = "whirlpoolTorShared";
   private static final String TOR_DIR_REG_OUT = "whirlpoolTorRegOut";
+  private static final String TOR_DIR_MIX = "whirlpoolTorMix";
+  private static final int NB_INSTANCES_MIN = 2;
+  private static final int WATCHDOG_DELAY = 30000;
 
   private CliConfig cliConfig;
-  private TorOnionProxyInstance torInstanceShared;
-  private TorOnionProxyInstance torInstanceRegOut;
+  private List<TorOnionProxyInstance> torInstances;
+  private JavaTorConnexion torConnexionShared;
+  private JavaTorConnexion torConnexionRegOut;
+  private TorInstancePool torInstancePool;
+  private List<TorDataDirectory> torDataDirectories;
+  private Optional<TorWatchdog> torWatchdog;
+  private Consumer<Collection<JavaTorConnexion>> onRenew;
+  private boolean regOutRenewPending = false;
   private boolean started = false;
 
   private TorConfig computeTorConfig(String dirName, Optional<File> torExecutable)
@@ -83,27 +100,80 @@ public class JavaTorClient {
     return file;
   }
 
-  public JavaTorClient(CliConfig cliConfig) throws Exception {
+  /** @param onRenew notified with connexions which circuits were renewed or restarted */
+  public JavaTorClient(CliConfig cliConfig, Consumer<Collection<JavaTorConnexion>> onRenew)
+      throws Exception {
     this.cliConfig = cliConfig;
+    this.onRenew = onRenew;
+    this.torInstances = new ArrayList<>();
+    this.torInstancePool = new TorInstancePool();
+    this.torDataDirectories = new ArrayList<>();
 
     Optional<File> torExecutable = computeTorExecutable();
     boolean useExecutableFromZip = !torExecutable.isPresent();
+    int nbInstances = Math.max(cliConfig.getTorConfig().getInstances(), NB_INSTANCES_MIN);
+
+    if (cliConfig.getTorConfig().isSingleProcess()) {
+      // run one TOR process, with one isolated socks port per connexion
+      List<Integer> isolatedSocksPorts = new ArrayList<>();
+      for (int i = 1; i < nbInstances; i++) {
+        isolatedSocksPorts.add(computeSocksPort(i));
+      }
+      TorOnionProxyInstance torInstance =
+          new TorOnionProxyInstance(
+              computeTorConfig(TOR_DIR_SHARED, torExecutable),
+              computeTorSettings(0, TOR_DIR_SHARED),
+              "shared",
+              useExecutableFromZip,
+              isolatedSocksPorts);
+      torInstances.add(torInstance);
+
+      this.torConnexionShared = torInstance;
+      this.torConnexionRegOut =
+          new TorIsolatedConnexion(torInstance, isolatedSocksPorts.get(0), "regOut");
+      for (int i = NB_INSTANCES_MIN; i < nbInstances; i++) {
+        torInstancePool.add(
+            new TorIsolatedConnexion(torInstance, isolatedSocksPorts.get(i - 1), "mix" + i));
+      }
+    } else {
+      // setup TOR instances
+      TorOnionProxyInstance torInstanceShared =
+          new TorOnionProxyInstance(
+              computeTorConfig(TOR_DIR_SHARED, torExecutable),
+              computeTorSettings(0, TOR_DIR_SHARED),
+              "shared",
+              useExecutableFromZip,
+              new ArrayList<>());
+      torInstances.add(torInstanceShared);
+      this.torConnexionShared = torInstanceShared;
 
-    // setup TOR instances
-    this.torInstanceShared =
-        new TorOnionProxyInstance(
-            computeTorConfig(TOR_DIR_SHARED, torExecutable),
-            computeTorSettings(0),
-            "shared",
-            useExecutableFromZip);
+      // run second instance on different ports
+      TorOnionProxyInstance torInstanceRegOut =
+          new TorOnionProxyInstance(
+              computeTorConfig(TOR_DIR_REG_OUT, torExecutable),
+              computeTorSettings(1, TOR_DIR_REG_OUT),
+              "regOut",
+              useExecutableFromZip,
+              new ArrayList<>());
+      torInstances.add(torInstanceRegOut);
+      this.torConnexionRegOut = torInstanceRegOut;
 
-    // run second instance on different ports
-    this.torInstanceRegOut =
-        new TorOnionProxyInstance(
-            computeTorConfig(TOR_DIR_REG_OUT, torExecutable),
-            computeTorSettings(1),
-            "regOut",
-            useExecutableFromZip);
+      // run additional instances for mixing clients
+      for (int i = NB_INSTANCES_MIN; i < nbInstances; i++) {
+        TorOnionProxyInstance torInstanceMix =
+            new TorOnionProxyInstance(
+                computeTorConfig(TOR_DIR_MIX + i, torExecutable),
+                computeTorSettings(i, TOR_DIR_MIX + i),
+                "mix" + i,
+                useExecutableFromZip,
+                new ArrayList<>());
+        torInstances.add(torInstanceMix);
+        torInstancePool.add(torInstanceMix);
+      }
+    }
+    this.torWatchdog =
+        Optional.of(
+            new TorWatchdog(WATCHDOG_DELAY, torInstances, () -> onRenew.accept(getConnexions())));
   }
 
   public void connect() {
@@ -115,9 +185,13 @@ public class JavaTorClient {
       log.debug("Connecting");
     }
 
-    torInstanceShared.start();
-    torInstanceRegOut.start();
+    for (TorOnionProxyInstance torInstance : torInstances) {
+      torInstance.start();
+    }
     started = true;
+    if (torWatchdog.isPresent()) {
+      torWatchdog.get().start();
+    }
   }
 
   public void waitReady() throws NotifiableException {
@@ -127,59 +201,249 @@ public class JavaTorClient {
     if (log.isDebugEnabled()) {
       log.debug("waitReady");
     }
-    torInstanceShared.waitReady();
-    torInstanceRegOut.waitReady();
+    for (TorOnionProxyInstance torInstance : torInstances) {
+      torInstance.waitReady();
+    }
     log.info(
         "TOR is ready: shared="
-            + torInstanceShared.getTorProxy()
+            + torConnexionShared.getTorProxy()
             + ", regOut="
-            + torInstanceRegOut.getTorProxy());
+            + torConnexionRegOut.getTorProxy()
+            + ", mix="
+            + torInstancePool.getConnexions().size()
+            + ", processes="
+            + torInstances.size());
+  }
+
+  /** Completes when all TOR processes are ready. */
+  public CompletableFuture<Void> getReadyFuture() {
+    CompletableFuture[] readyFutures =
+        torInstances.stream().map(i -> i.getReadyFuture()).toArray(CompletableFuture[]::new);
+    return CompletableFuture.allOf(readyFutures);
   }
 
-  public void changeIdentity() {
+  public boolean changeIdentity() {
     if (!started) {
       if (log.isDebugEnabled()) {
         log.debug("Changing TOR identity -> connect");
       }
       connect();
+      return true;
     } else {
       if (log.isDebugEnabled()) {
         log.debug("Changing TOR identity");
       }
 
-      torInstanceShared.changeIdentity();
-      torInstanceRegOut.changeIdentity();
+      // connexions not used by in-flight mixs
+      Set<JavaTorConnexion> renewConnexions = new LinkedHashSet<>();
+      renewConnexions.add(torConnexionShared);
+      synchronized (this) {
+        if (torInstancePool.hasLeases()) {
+          // in-flight mixs may still register outputs: renew when last lease is released
+          regOutRenewPending = true;
+        } else {
+          regOutRenewPending = false;
+          renewConnexions.add(torConnexionRegOut);
+        }
+      }
+
+      // leased connexions are renewed on release, don't disrupt in-flight mixs
+      for (JavaTorConnexion torConnexion : torInstancePool.getConnexions()) {
+        if (!torInstancePool.isLeased(torConnexion)) {
+          renewConnexions.add(torConnexion);
+        }
+      }
+
+      return renew(renewConnexions);
     }
   }
 
+  /** Renew circuits of these connexions (once per TOR process), and notify onRenew. */
+  public boolean renew(Collection<JavaTorConnexion> torConnexions) {
+    boolean success = true;
+    try {
+      if (!started) {
+        // circuits will be new on next start
+        return false;
+      }
+      Set<TorOnionProxyInstance> renewInstances = new LinkedHashSet<>();
+      for (JavaTorConnexion torConnexion : torConnexions) {
+        renewInstances.add(getInstance(torConnexion));
+      }
+      for (TorOnionProxyInstance torInstance : renewInstances) {
+        if (!torInstance.changeIdentity()) {
+          success = false;
+        }
+      }
+    } finally {
+      // leasable again
+      if (torInstancePool != null) {
+        for (JavaTorConnexion torConnexion : torConnexions) {
+          torInstancePool.setRenewed(torConnexion);
+        }
+      }
+    }
+    onRenew.accept(torConnexions);
+    return success;
+  }
+
   public void disconnect() {
     if (log.isDebugEnabled()) {
       log.debug("Disconnecting");
     }
 
+    stopWatchdog();
     started = false;
-    torInstanceShared.stop();
-    torInstanceRegOut.stop();
+    for (TorOnionProxyInstance torInstance : torInstances) {
+      torInstance.stop();
+    }
+  }
+
+  private void stopWatchdog() {
+    if (started && torWatchdog.isPresent()) {
+      torWatchdog.get().stop();
+    }
   }
 
   public void shutdown() {
+    stopWatchdog();
+    torWatchdog = Optional.empty();
     started = false;
-    torInstanceShared.clear();
-    torInstanceRegOut.clear();
-    torInstanceShared = null;
-    torInstanceRegOut = null;
+    for (TorOnionProxyInstance torInstance : torInstances) {
+      torInstance.clear();
+    }
+    torInstances.clear();
+    for (TorDataDirectory torDataDirectory : torDataDirectories) {
+      torDataDirectory.release();
+    }
+    torDataDirectories.clear();
+    torConnexionShared = null;
+    torConnexionRegOut = null;
+    torInstancePool = null;
   }
 
   public JavaTorConnexion getConnexion(boolean isRegisterOutput) {
-    TorOnionProxyInstance torInstance = isRegisterOutput ? torInstanceRegOut : torInstanceShared;
-    return torInstance;
+    if (isRegisterOutput) {
+      // never failover register-output, which must stay unlinked to other connexions
+      return torConnexionRegOut;
+    }
+    if (!isAvailable(torConnexionShared)) {
+      // failover to an available mix connexion while shared TOR is restarting
+      Optional<JavaTorConnexion> torConnexionFailover =
+          torInstancePool.getConnexions().stream().filter(c -> isAvailable(c)).findFirst();
+      if (torConnexionFailover.isPresent()) {
+        if (log.isDebugEnabled()) {
+          log.debug("Shared TOR is down, using " + torConnexionFailover.get());
+        }
+        return torConnexionFailover.get();
+      }
+    }
+    return torConnexionShared;
+  }
+
+  // another available connexion, for retrying or hedging a request (never register-output)
+  public Optional<JavaTorConnexion> getConnexionAlternate() {
+    JavaTorConnexion torConnexion = getConnexion(false);
+    List<JavaTorConnexion> alternates = new ArrayList<>();
+    for (JavaTorConnexion c : getConnexionsIdle()) {
+      if (c != torConnexion && isAvailable(c)) {
+        alternates.add(c);
+      }
+    }
+    if (alternates.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(alternates.get(ThreadLocalRandom.current().nextInt(alternates.size())));
+  }
+
+  // lease a dedicated connexion for a mixing client, when available
+  public Optional<JavaTorConnexion> leaseConnexion() {
+    return torInstancePool.lease(c -> isAvailable(c));
+  }
+
+  private boolean isAvailable(JavaTorConnexion torConnexion) {
+    return !getInstance(torConnexion).getHealth().isDown();
+  }
+
+  public Collection<TorInstanceHealth> getInstancesHealth() {
+    List<TorInstanceHealth> instancesHealth = new ArrayList<>();
+    for (TorOnionProxyInstance torInstance : torInstances) {
+      instancesHealth.add(torInstance.getHealth());
+    }
+    return instancesHealth;
+  }
+
+  /** @return connexions to renew through renew(), as they are not used by any mix anymore */
+  public Collection<JavaTorConnexion> releaseConnexion(JavaTorConnexion torConnexion) {
+    List<JavaTorConnexion> renewConnexions = new ArrayList<>();
+    if (torInstancePool.release(torConnexion)) {
+      renewConnexions.add(torConnexion);
+    }
+
+    // no more mix in flight: renew register-output deferred by changeIdentity()
+    synchronized (this) {
+      if (regOutRenewPending && !torInstancePool.hasLeases()) {
+        regOutRenewPending = false;
+        if (log.isDebugEnabled()) {
+          log.debug("Register-output circuits to renew");
+        }
+        renewConnexions.add(torConnexionRegOut);
+      }
+    }
+    return renewConnexions;
+  }
+
+  public Collection<JavaTorConnexion> getConnexions() {
+    List<JavaTorConnexion> torConnexions = new ArrayList<>();
+    torConnexions.add(torConnexionShared);
+    torConnexions.add(torConnexionRegOut);
+    torConnexions.addAll(torInstancePool.getConnexions());
+    return torConnexions;
+  }
+
+  public Collection<JavaTorConnexion> getConnexionsMix() {
+    return torInstancePool.getConnexions();
   }
 
-  private TorSettings computeTorSettings(int portOffset) {
-    TorSettings torSettings = new JavaTorSettings(cliConfig.getCliProxy(), portOffset);
+  // connexions which may be used by next mix (excluding register-output)
+  public Collection<JavaTorConnexion> getConnexionsIdle() {
+    List<JavaTorConnexion> torConnexions = new ArrayList<>();
+    torConnexions.add(torConnexionShared);
+    for (JavaTorConnexion torConnexion : torInstancePool.getConnexions()) {
+      if (!torInstancePool.isLeased(torConnexion)) {
+        torConnexions.add(torConnexion);
+      }
+    }
+    return torConnexions;
+  }
+
+  private TorOnionProxyInstance getInstance(JavaTorConnexion torConnexion) {
+    if (torConnexion instanceof TorIsolatedConnexion) {
+      return ((TorIsolatedConnexion) torConnexion).getTorInstance();
+    }
+    return (TorOnionProxyInstance) torConnexion;
+  }
+
+  private TorSettings computeTorSettings(int portOffset, String dirName) {
+    Optional<File> dataDir = Optional.empty();
+    if (cliConfig.getTorConfig().isPersistent()) {
+      // reuse TOR cache from previous runs when available
+      Optional<TorDataDirectory> torDataDirectory = TorDataDirectory.open(dirName);
+      if (torDataDirectory.isPresent()) {
+        torDataDirectories.add(torDataDirectory.get());
+        dataDir = Optional.of(torDataDirectory.get().getDir());
+      }
+    }
+    TorSettings torSettings = new JavaTorSettings(cliConfig.getCliProxy(), portOffset, dataDir);
     return torSettings;
   }
 
+  private int computeSocksPort(int portOffset) {
+    TorSettings torSettings =
+        new JavaTorSettings(cliConfig.getCliProxy(), portOffset, Optional.empty());
+    return Integer.parseInt(torSettings.getSocksPort());
+  }
+
   private Optional<File> computeTorExecutable() throws NotifiableException {
     boolean torExecutableAuto = cliConfig.getTorConfig().isExecutableAuto();
     boolean torExecutableLocal = cliConfig.getTorConfig().isExecutableLocal();
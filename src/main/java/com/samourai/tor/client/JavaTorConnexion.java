@@ -2,10 +2,16 @@ package com.samourai.tor.client;
 
 import com.samourai.whirlpool.cli.beans.CliProxy;
 import com.samourai.whirlpool.client.exception.NotifiableException;
+import java.util.concurrent.CompletableFuture;
 
 public interface JavaTorConnexion {
 
   CliProxy getTorProxy() throws NotifiableException;
 
   int getProgress();
+
+  CompletableFuture<CliProxy> getReadyFuture();
+
+  // renew circuits, returns false when TOR refused it
+  boolean changeIdentity();
 }
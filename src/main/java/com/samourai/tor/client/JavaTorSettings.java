@@ -3,15 +3,18 @@ package com.samourai.tor.client;
 import com.msopentech.thali.toronionproxy.DefaultSettings;
 import com.samourai.whirlpool.cli.beans.CliProxy;
 import com.samourai.whirlpool.cli.beans.CliProxyProtocol;
+import java.io.File;
 import java.util.Optional;
 
 public class JavaTorSettings extends DefaultSettings {
   private CliProxy cliProxy;
   private int portOffset;
+  private File dataDir;
 
-  public JavaTorSettings(Optional<CliProxy> cliProxy, int portOffset) {
+  public JavaTorSettings(Optional<CliProxy> cliProxy, int portOffset, Optional<File> dataDir) {
     this.cliProxy = cliProxy.orElse(null);
     this.portOffset = portOffset;
+    this.dataDir = dataDir.orElse(null);
   }
 
   @Override
@@ -83,11 +86,23 @@ public class JavaTorSettings extends DefaultSettings {
     return null;
   }
 
+  @Override
+  public String getCustomTorrc() {
+    if (dataDir != null) {
+      // persistent data directory
+      return "DataDirectory " + dataDir.getAbsolutePath();
+    }
+    return null;
+  }
+
   @Override
   public String toString() {
     return "TorSettings[proxy="
         + (cliProxy != null ? cliProxy : "null")
         + ", portOffset="
-        + portOffset;
+        + portOffset
+        + ", dataDir="
+        + (dataDir != null ? dataDir.getAbsolutePath() : "null")
+        + "]";
   }
 }
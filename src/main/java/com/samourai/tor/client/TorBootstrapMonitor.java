@@ -0,0 +1,130 @@
+package com.samourai.tor.client;
+
+import com.msopentech.thali.toronionproxy.TorConfig;
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.freehaven.tor.control.EventHandler;
+import net.freehaven.tor.control.TorControlConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listens to bootstrap events on TOR control port, and publishes real bootstrap progress (0-100)
+ * as soon as TOR reports it.
+ */
+public class TorBootstrapMonitor implements EventHandler {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final Pattern PATTERN_PROGRESS = Pattern.compile("PROGRESS=(\\d+)");
+  private static final String EVENT_STATUS_CLIENT = "STATUS_CLIENT";
+  private static final String EVENT_CIRC = "CIRC";
+  private static final String CIRCUIT_BUILT = "BUILT";
+  private static final int CONTROL_PORT_FILE_DELAY = 100;
+  private static final int CONTROL_PORT_FILE_TIMEOUT = 60000;
+
+  private TorConfig torConfig;
+  private IntConsumer onProgress;
+  private Socket controlSocket;
+  private int nbCircuitsBuilt;
+
+  public TorBootstrapMonitor(TorConfig torConfig, IntConsumer onProgress) {
+    this.torConfig = torConfig;
+    this.onProgress = onProgress;
+    this.controlSocket = null;
+    this.nbCircuitsBuilt = 0;
+  }
+
+  /** Attach to control port once TOR wrote it. Blocking, to run from TOR start thread. */
+  public void start() throws Exception {
+    int controlPort = readControlPort();
+    controlSocket = new Socket("127.0.0.1", controlPort);
+    TorControlConnection controlConnection = new TorControlConnection(controlSocket);
+    controlConnection.launchThread(true);
+    controlConnection.authenticate(Files.readAllBytes(torConfig.getCookieAuthFile().toPath()));
+    controlConnection.setEventHandler(this);
+    controlConnection.setEvents(Arrays.asList(EVENT_STATUS_CLIENT, EVENT_CIRC));
+
+    // bootstrap may have progressed before we subscribed
+    onBootstrapStatus(controlConnection.getInfo("status/bootstrap-phase"));
+  }
+
+  private int readControlPort() throws Exception {
+    // written by TOR on startup: PORT=127.0.0.1:port
+    File controlPortFile = torConfig.getControlPortFile();
+    long timeout = System.currentTimeMillis() + CONTROL_PORT_FILE_TIMEOUT;
+    while (!controlPortFile.exists() || controlPortFile.length() == 0) {
+      if (System.currentTimeMillis() > timeout) {
+        throw new Exception("TOR control port file not found: " + controlPortFile);
+      }
+      Thread.sleep(CONTROL_PORT_FILE_DELAY);
+    }
+    String content =
+        new String(Files.readAllBytes(controlPortFile.toPath()), StandardCharsets.UTF_8).trim();
+    return Integer.parseInt(content.substring(content.lastIndexOf(':') + 1));
+  }
+
+  public synchronized void stop() {
+    if (controlSocket != null) {
+      try {
+        controlSocket.close();
+      } catch (Exception e) {
+      }
+      controlSocket = null;
+    }
+  }
+
+  private void onBootstrapStatus(String msg) {
+    if (msg == null) {
+      return;
+    }
+    Matcher matcher = PATTERN_PROGRESS.matcher(msg);
+    if (matcher.find()) {
+      int progress = Integer.parseInt(matcher.group(1));
+      if (log.isDebugEnabled()) {
+        log.debug("bootstrap: " + progress + "%");
+      }
+      onProgress.accept(progress);
+    }
+  }
+
+  public int getNbCircuitsBuilt() {
+    return nbCircuitsBuilt;
+  }
+
+  @Override
+  public void unrecognized(String type, String msg) {
+    // jtorctl doesn't parse STATUS_CLIENT events
+    if (EVENT_STATUS_CLIENT.equals(type) && msg != null && msg.contains("BOOTSTRAP")) {
+      onBootstrapStatus(msg);
+    }
+  }
+
+  @Override
+  public void circuitStatus(String status, String circID, String path) {
+    if (CIRCUIT_BUILT.equals(status)) {
+      nbCircuitsBuilt++;
+    }
+  }
+
+  @Override
+  public void streamStatus(String status, String streamID, String target) {}
+
+  @Override
+  public void orConnStatus(String status, String orName) {}
+
+  @Override
+  public void bandwidthUsed(long read, long written) {}
+
+  @Override
+  public void newDescriptors(List<String> orList) {}
+
+  @Override
+  public void message(String severity, String msg) {}
+}
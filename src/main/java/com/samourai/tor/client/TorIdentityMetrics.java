@@ -0,0 +1,105 @@
+package com.samourai.tor.client;
+
+/** Outcomes and durations of TOR identity rotations. */
+public class TorIdentityMetrics {
+  private long nbRequests;
+  private long nbCoalesced;
+  private long nbRotations;
+  private long nbRotationsFailed;
+  private long rotationDurationTotal;
+  private long rotationDurationLast;
+  private Long lastRotation;
+  private long nbPrebuilds;
+  private long nbPrebuildsFailed;
+  private long prebuildDurationTotal;
+
+  public TorIdentityMetrics() {
+    this.lastRotation = null;
+  }
+
+  protected synchronized void onRequest(boolean coalesced) {
+    nbRequests++;
+    if (coalesced) {
+      nbCoalesced++;
+    }
+  }
+
+  protected synchronized void onRotation(boolean success, long duration) {
+    nbRotations++;
+    if (!success) {
+      nbRotationsFailed++;
+    }
+    rotationDurationTotal += duration;
+    rotationDurationLast = duration;
+    lastRotation = System.currentTimeMillis();
+  }
+
+  protected synchronized void onPrebuild(boolean success, long duration) {
+    nbPrebuilds++;
+    if (!success) {
+      nbPrebuildsFailed++;
+    }
+    prebuildDurationTotal += duration;
+  }
+
+  public synchronized long getNbRequests() {
+    return nbRequests;
+  }
+
+  public synchronized long getNbCoalesced() {
+    return nbCoalesced;
+  }
+
+  public synchronized long getNbRotations() {
+    return nbRotations;
+  }
+
+  public synchronized long getNbRotationsFailed() {
+    return nbRotationsFailed;
+  }
+
+  public synchronized long getRotationDurationAvg() {
+    return nbRotations > 0 ? rotationDurationTotal / nbRotations : 0;
+  }
+
+  public synchronized long getRotationDurationLast() {
+    return rotationDurationLast;
+  }
+
+  public synchronized Long getLastRotation() {
+    return lastRotation;
+  }
+
+  public synchronized long getNbPrebuilds() {
+    return nbPrebuilds;
+  }
+
+  public synchronized long getNbPrebuildsFailed() {
+    return nbPrebuildsFailed;
+  }
+
+  public synchronized long getPrebuildDurationAvg() {
+    return nbPrebuilds > 0 ? prebuildDurationTotal / nbPrebuilds : 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "requests="
+        + nbRequests
+        + ", coalesced="
+        + nbCoalesced
+        + ", rotations="
+        + nbRotations
+        + " ("
+        + nbRotationsFailed
+        + " failed, avg "
+        + getRotationDurationAvg()
+        + "ms), prebuilds="
+        + nbPrebuilds
+        + " ("
+        + nbPrebuildsFailed
+        + " failed, avg "
+        + getPrebuildDurationAvg()
+        + "ms)";
+  }
+}
@@ -0,0 +1,180 @@
+package com.samourai.tor.client;
+
+import com.samourai.whirlpool.cli.beans.CliProxy;
+import java.lang.invoke.MethodHandles;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules TOR identity rotations: concurrent requests are coalesced into a single NEWNYM, never
+ * sent more often than TOR accepts it. A request renews every idle connexion, or only given
+ * connexions (released by a mix). After each rotation, a circuit to the server is built in advance
+ * on each idle connexion, so the next mix doesn't wait for it.
+ */
+public class TorIdentityRotator {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int NEWNYM_INTERVAL = 10000; // TOR ignores NEWNYM sent more often
+  private static final int PREBUILD_TIMEOUT = 30000;
+
+  private Rotation rotation;
+  private Supplier<Collection<JavaTorConnexion>> prebuildConnexions;
+  private Optional<InetSocketAddress> prebuildTarget;
+  private TorIdentityMetrics metrics;
+  private ScheduledExecutorService executor;
+  private boolean pending;
+  private boolean pendingAll; // every idle connexion
+  private Set<JavaTorConnexion> pendingConnexions;
+  private long lastRotation;
+
+  public TorIdentityRotator(
+      Rotation rotation,
+      Supplier<Collection<JavaTorConnexion>> prebuildConnexions,
+      String serverUrl) {
+    this.rotation = rotation;
+    this.prebuildConnexions = prebuildConnexions;
+    this.prebuildTarget = computePrebuildTarget(serverUrl);
+    this.metrics = new TorIdentityMetrics();
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "tor-identity");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.pending = false;
+    this.pendingAll = false;
+    this.pendingConnexions = new LinkedHashSet<>();
+    this.lastRotation = 0;
+  }
+
+  private static Optional<InetSocketAddress> computePrebuildTarget(String serverUrl) {
+    try {
+      URL url = new URL(serverUrl);
+      int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+      // resolved by TOR exit
+      return Optional.of(InetSocketAddress.createUnresolved(url.getHost(), port));
+    } catch (Exception e) {
+      log.warn("Circuit prebuild disabled: invalid server url: " + serverUrl);
+      return Optional.empty();
+    }
+  }
+
+  /** Renew every idle connexion. */
+  public void requestRotation() {
+    request(Optional.empty());
+  }
+
+  /** Renew these connexions only. */
+  public void requestRotation(Collection<JavaTorConnexion> torConnexions) {
+    if (!torConnexions.isEmpty()) {
+      request(Optional.of(torConnexions));
+    }
+  }
+
+  private synchronized void request(Optional<Collection<JavaTorConnexion>> torConnexions) {
+    if (torConnexions.isPresent()) {
+      pendingConnexions.addAll(torConnexions.get());
+    } else {
+      pendingAll = true;
+    }
+    if (pending) {
+      // next rotation is not started yet and will serve this request too
+      metrics.onRequest(true);
+      if (log.isDebugEnabled()) {
+        log.debug("Identity rotation already pending");
+      }
+      return;
+    }
+    metrics.onRequest(false);
+    pending = true;
+    long delay = Math.max(0, lastRotation + NEWNYM_INTERVAL - System.currentTimeMillis());
+    if (log.isDebugEnabled()) {
+      log.debug("Identity rotation scheduled in " + delay + "ms");
+    }
+    executor.schedule(() -> rotate(), delay, TimeUnit.MILLISECONDS);
+  }
+
+  private void rotate() {
+    Optional<Set<JavaTorConnexion>> torConnexions;
+    synchronized (this) {
+      // requests received from now need another rotation
+      pending = false;
+      lastRotation = System.currentTimeMillis();
+      torConnexions = pendingAll ? Optional.empty() : Optional.of(pendingConnexions);
+      pendingAll = false;
+      pendingConnexions = new LinkedHashSet<>();
+    }
+
+    long start = System.currentTimeMillis();
+    boolean success;
+    try {
+      success = rotation.rotate(torConnexions);
+    } catch (Exception e) {
+      log.error("Identity rotation failed", e);
+      success = false;
+    }
+    long duration = System.currentTimeMillis() - start;
+    metrics.onRotation(success, duration);
+    if (log.isDebugEnabled()) {
+      log.debug("Identity rotation " + (success ? "success" : "failed") + " in " + duration + "ms");
+    }
+
+    if (success && prebuildTarget.isPresent()) {
+      for (JavaTorConnexion torConnexion : prebuildConnexions.get()) {
+        prebuild(torConnexion, prebuildTarget.get());
+      }
+    }
+  }
+
+  private void prebuild(JavaTorConnexion torConnexion, InetSocketAddress target) {
+    long start = System.currentTimeMillis();
+    boolean success = false;
+    try {
+      CliProxy torProxy = torConnexion.getTorProxy();
+      if (torProxy != null) {
+        // TOR builds a circuit to open the stream, which is reused by next requests
+        Proxy proxy =
+            new Proxy(
+                Proxy.Type.SOCKS, new InetSocketAddress(torProxy.getHost(), torProxy.getPort()));
+        try (Socket socket = new Socket(proxy)) {
+          socket.connect(target, PREBUILD_TIMEOUT);
+        }
+        success = true;
+      }
+    } catch (Exception e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Circuit prebuild failed for " + torConnexion + ": " + e.getMessage());
+      }
+    }
+    long duration = System.currentTimeMillis() - start;
+    metrics.onPrebuild(success, duration);
+    if (log.isDebugEnabled() && success) {
+      log.debug("Circuit prebuilt for " + torConnexion + " in " + duration + "ms");
+    }
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  public TorIdentityMetrics getMetrics() {
+    return metrics;
+  }
+
+  public interface Rotation {
+    /** @param torConnexions connexions to renew, or every idle connexion when empty */
+    boolean rotate(Optional<Set<JavaTorConnexion>> torConnexions) throws Exception;
+  }
+}
@@ -0,0 +1,105 @@
+package com.samourai.tor.client;
+
+/** Health of a TOR process: uptime, restarts and bootstrap duration. */
+public class TorInstanceHealth {
+  private static final int RESTART_BACKOFF_MIN = 5000;
+  private static final int RESTART_BACKOFF_MAX = 300000;
+
+  private String name;
+  private boolean down;
+  private Long startTime;
+  private Long readyTime;
+  private Long bootstrapDuration;
+  private int nbRestarts;
+  private int nbFailures; // consecutive failures since last healthy check
+  private long nextRestart;
+
+  public TorInstanceHealth(String name) {
+    this.name = name;
+    this.down = false;
+    this.startTime = null;
+    this.readyTime = null;
+    this.bootstrapDuration = null;
+    this.nbRestarts = 0;
+    this.nbFailures = 0;
+    this.nextRestart = 0;
+  }
+
+  protected synchronized void onStart() {
+    startTime = System.currentTimeMillis();
+    readyTime = null;
+  }
+
+  protected synchronized void onReady() {
+    readyTime = System.currentTimeMillis();
+    if (startTime != null) {
+      bootstrapDuration = readyTime - startTime;
+    }
+  }
+
+  protected synchronized void onStop() {
+    startTime = null;
+    readyTime = null;
+  }
+
+  protected synchronized void onAlive() {
+    down = false;
+    nbFailures = 0;
+  }
+
+  protected synchronized void onDown() {
+    if (!down) {
+      down = true;
+      // restart delay doubles on each consecutive failure
+      long backoff = (long) RESTART_BACKOFF_MIN << Math.min(nbFailures, 16);
+      nextRestart = System.currentTimeMillis() + Math.min(backoff, RESTART_BACKOFF_MAX);
+    }
+  }
+
+  protected synchronized boolean isRestartDue() {
+    return down && System.currentTimeMillis() >= nextRestart;
+  }
+
+  protected synchronized void onRestart() {
+    nbRestarts++;
+    nbFailures++;
+    down = false;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public synchronized boolean isDown() {
+    return down;
+  }
+
+  public synchronized Long getUptime() {
+    return readyTime != null ? System.currentTimeMillis() - readyTime : null;
+  }
+
+  public synchronized Long getBootstrapDuration() {
+    return bootstrapDuration;
+  }
+
+  public synchronized int getNbRestarts() {
+    return nbRestarts;
+  }
+
+  public synchronized int getNbFailures() {
+    return nbFailures;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return name
+        + ": "
+        + (down ? "DOWN" : "up")
+        + ", uptime="
+        + (getUptime() != null ? getUptime() / 1000 + "s" : "-")
+        + ", bootstrap="
+        + (bootstrapDuration != null ? bootstrapDuration + "ms" : "-")
+        + ", restarts="
+        + nbRestarts;
+  }
+}
@@ -0,0 +1,95 @@
+package com.samourai.tor.client;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TOR connexions leased to mixing clients. Each lease gets the least used connexion, so concurrent
+ * mixs get their own circuits when enough connexions are available. Circuits of a connexion must be
+ * renewed when its last lease is released: it is not leased again until setRenewed().
+ */
+public class TorInstancePool {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private Map<JavaTorConnexion, Integer> leases;
+  private Set<JavaTorConnexion> renewing; // released, waiting for new circuits
+
+  public TorInstancePool() {
+    this.leases = new LinkedHashMap<>();
+    this.renewing = new HashSet<>();
+  }
+
+  public synchronized void add(JavaTorConnexion torConnexion) {
+    leases.put(torConnexion, 0);
+  }
+
+  // lease least used connexion among available ones
+  public synchronized Optional<JavaTorConnexion> lease(Predicate<JavaTorConnexion> available) {
+    Optional<JavaTorConnexion> torConnexion =
+        leases
+            .keySet()
+            .stream()
+            .filter(c -> !renewing.contains(c))
+            .filter(available)
+            .min(Comparator.comparing(c -> leases.get(c)));
+    if (torConnexion.isPresent()) {
+      int nbLeases = leases.get(torConnexion.get()) + 1;
+      leases.put(torConnexion.get(), nbLeases);
+      if (log.isDebugEnabled()) {
+        log.debug("lease: " + torConnexion.get() + " (" + nbLeases + " leases)");
+      }
+    }
+    return torConnexion;
+  }
+
+  /** @return true when circuits of this connexion must be renewed (last lease released) */
+  public synchronized boolean release(JavaTorConnexion torConnexion) {
+    Integer current = leases.get(torConnexion);
+    if (current == null || current == 0) {
+      log.warn("release: connexion not leased: " + torConnexion);
+      return false;
+    }
+    int nbLeases = current - 1;
+    leases.put(torConnexion, nbLeases);
+    if (log.isDebugEnabled()) {
+      log.debug("release: " + torConnexion + " (" + nbLeases + " leases)");
+    }
+    if (nbLeases == 0) {
+      // renew circuits before next lease
+      renewing.add(torConnexion);
+      return true;
+    }
+    return false;
+  }
+
+  public synchronized void setRenewed(JavaTorConnexion torConnexion) {
+    renewing.remove(torConnexion);
+  }
+
+  public synchronized boolean isLeased(JavaTorConnexion torConnexion) {
+    Integer nbLeases = leases.get(torConnexion);
+    return nbLeases != null && nbLeases > 0;
+  }
+
+  public synchronized boolean hasLeases() {
+    return leases.values().stream().anyMatch(nbLeases -> nbLeases > 0);
+  }
+
+  public synchronized Collection<JavaTorConnexion> getConnexions() {
+    return new ArrayList<>(leases.keySet());
+  }
+
+  public synchronized boolean isEmpty() {
+    return leases.isEmpty();
+  }
+}
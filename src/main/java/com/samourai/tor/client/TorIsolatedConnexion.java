@@ -0,0 +1,57 @@
+package com.samourai.tor.client;
+
+import com.samourai.whirlpool.cli.beans.CliProxy;
+import com.samourai.whirlpool.cli.beans.CliProxyProtocol;
+import com.samourai.whirlpool.client.exception.NotifiableException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Lightweight connexion on a shared TOR process: a dedicated socks port of this process. TOR never
+ * shares circuits between streams received on different socks ports.
+ */
+public class TorIsolatedConnexion implements JavaTorConnexion {
+  private TorOnionProxyInstance torInstance;
+  private int socksPort;
+  private String name;
+
+  public TorIsolatedConnexion(TorOnionProxyInstance torInstance, int socksPort, String name) {
+    this.torInstance = torInstance;
+    this.socksPort = socksPort;
+    this.name = name;
+  }
+
+  @Override
+  public CliProxy getTorProxy() throws NotifiableException {
+    torInstance.waitReady();
+    return computeTorProxy();
+  }
+
+  @Override
+  public CompletableFuture<CliProxy> getReadyFuture() {
+    return torInstance.getReadyFuture().thenApply(instanceProxy -> computeTorProxy());
+  }
+
+  private CliProxy computeTorProxy() {
+    return new CliProxy(CliProxyProtocol.SOCKS, "127.0.0.1", socksPort);
+  }
+
+  @Override
+  public int getProgress() {
+    return torInstance.getProgress();
+  }
+
+  @Override
+  public boolean changeIdentity() {
+    // circuits are renewed for the whole process
+    return torInstance.changeIdentity();
+  }
+
+  public TorOnionProxyInstance getTorInstance() {
+    return torInstance;
+  }
+
+  @Override
+  public String toString() {
+    return "TorIsolatedConnexion[" + name + ", socksPort=" + socksPort + "]";
+  }
+}
@@ -8,21 +8,33 @@ import com.samourai.whirlpool.cli.beans.CliProxyProtocol;
 import com.samourai.whirlpool.client.exception.NotifiableException;
 import com.samourai.whirlpool.client.utils.ClientUtils;
 import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class TorOnionProxyInstance implements JavaTorConnexion {
   private Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
-  private static final int PROGRESS_CONNECTING = 50;
+  private static final int PROGRESS_DISCONNECTED = 50;
 
+  private String name;
   private OnionProxyManager onionProxyManager;
   private Thread startThread;
-  private CliProxy torProxy = null;
-  private int progress;
+  private TorBootstrapMonitor bootstrapMonitor;
+  private CompletableFuture<CliProxy> readyFuture;
+  private volatile int progress;
+  private TorInstanceHealth health;
 
   public TorOnionProxyInstance(
-      TorConfig torConfig, TorSettings torSettings, String logPrefix, boolean useExecutableFromZip)
+      TorConfig torConfig,
+      TorSettings torSettings,
+      String logPrefix,
+      boolean useExecutableFromZip,
+      List<Integer> isolatedSocksPorts)
       throws Exception {
+    this.name = logPrefix;
+    this.health = new TorInstanceHealth(logPrefix);
     this.log = ClientUtils.prefixLogger(log, logPrefix);
     if (log.isDebugEnabled()) {
       log.debug("new TorOnionProxyInstance: " + torConfig + " ; " + torSettings);
@@ -34,10 +46,16 @@ public class TorOnionProxyInstance implements JavaTorConnexion {
     onionProxyManager = new OnionProxyManager(context);
 
     TorConfigBuilder builder = onionProxyManager.getContext().newConfigBuilder().updateTorConfig();
+    for (int isolatedSocksPort : isolatedSocksPorts) {
+      // streams from different socks ports never share circuits
+      builder.socksPort(Integer.toString(isolatedSocksPort), null);
+    }
     onionProxyManager.getContext().getInstaller().updateTorConfigCustom(builder.asString());
     onionProxyManager.setup();
 
     startThread = null;
+    bootstrapMonitor = null;
+    readyFuture = new CompletableFuture<>();
     progress = 0;
   }
 
@@ -50,7 +68,30 @@ public class TorOnionProxyInstance implements JavaTorConnexion {
     if (log.isDebugEnabled()) {
       log.debug("starting TOR");
     }
-    progress = PROGRESS_CONNECTING;
+    if (readyFuture.isDone()) {
+      readyFuture = new CompletableFuture<>();
+    }
+    progress = 0;
+    health.onStart();
+
+    // don't attach bootstrap monitor to a previous TOR process
+    TorConfig torConfig = onionProxyManager.getContext().getConfig();
+    torConfig.getControlPortFile().delete();
+    TorBootstrapMonitor monitor = new TorBootstrapMonitor(torConfig, p -> onBootstrapProgress(p));
+    bootstrapMonitor = monitor;
+    Thread monitorThread =
+        new Thread(
+            () -> {
+              try {
+                monitor.start();
+              } catch (Exception e) {
+                // not critical, readiness is still signaled when startup completes
+                log.warn("Unable to monitor TOR bootstrap: " + e.getMessage());
+              }
+            },
+            "tor-bootstrap-" + name);
+    monitorThread.setDaemon(true);
+    monitorThread.start();
 
     startThread =
         new Thread(
@@ -61,6 +102,7 @@ public class TorOnionProxyInstance implements JavaTorConnexion {
                   log.error("Couldn't start tor");
                   throw new RuntimeException("Couldn't start tor");
                 }
+                onReady();
               } catch (Exception e) {
                 log.error("", e);
                 stop();
@@ -69,33 +111,93 @@ public class TorOnionProxyInstance implements JavaTorConnexion {
     startThread.start();
   }
 
-  public void waitReady() throws NotifiableException {
-    while (!checkReady()) {
-      if (startThread == null) {
-        throw new NotifiableException("Tor connect failed");
-      }
-      try {
-        Thread.sleep(90);
-      } catch (InterruptedException e) {
-      }
+  private void onBootstrapProgress(int bootstrapProgress) {
+    if (bootstrapProgress >= 100) {
+      onReady();
+    } else if (!readyFuture.isDone()) {
+      progress = bootstrapProgress;
     }
   }
 
-  private boolean checkReady() {
-    boolean ready = onionProxyManager.isRunning();
-    if (ready && progress != 100) {
+  private synchronized void onReady() {
+    if (readyFuture.isDone() || startThread == null) {
+      return;
+    }
+    try {
+      CliProxy torProxy =
+          new CliProxy(
+              CliProxyProtocol.SOCKS, "127.0.0.1", onionProxyManager.getIPv4LocalHostSocksPort());
+      progress = 100;
+      health.onReady();
       if (log.isDebugEnabled()) {
-        log.debug("TOR connected!");
+        log.debug("TOR connected! " + health);
       }
-      progress = 100;
-    }
-    if (!ready && progress == 100) {
+      readyFuture.complete(torProxy);
+    } catch (Exception e) {
+      // socks port not available yet, will be completed when startup completes
       if (log.isDebugEnabled()) {
-        log.debug("TOR disconnected!");
+        log.debug("TOR bootstrapped but socks port not available yet");
+      }
+    }
+  }
+
+  public CliProxy waitReady() throws NotifiableException {
+    CompletableFuture<CliProxy> future;
+    synchronized (this) {
+      if (startThread == null && !readyFuture.isDone()) {
+        throw new NotifiableException("Tor connect failed");
       }
-      progress = PROGRESS_CONNECTING;
+      future = readyFuture;
     }
-    return ready;
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw new NotifiableException("Tor connect failed");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new NotifiableException("Tor connect interrupted");
+    }
+  }
+
+  // ready and not stopped since
+  public synchronized boolean isReady() {
+    return readyFuture.isDone() && !readyFuture.isCompletedExceptionally();
+  }
+
+  public synchronized boolean isStarting() {
+    return startThread != null && !readyFuture.isDone();
+  }
+
+  // liveness check through control port
+  public boolean isAlive() {
+    try {
+      return onionProxyManager.isRunning();
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  public synchronized void restart() {
+    log.warn("restarting TOR (" + health + ")");
+    stop();
+    health.onRestart();
+    start();
+  }
+
+  public TorInstanceHealth getHealth() {
+    return health;
+  }
+
+  /** Completes when TOR is ready, or completes exceptionally when TOR is stopped. */
+  @Override
+  public synchronized CompletableFuture<CliProxy> getReadyFuture() {
+    if (startThread == null && !readyFuture.isDone()) {
+      // not started, or stopped: readyFuture would never complete
+      CompletableFuture<CliProxy> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new NotifiableException("Tor connect failed"));
+      return failed;
+    }
+    return readyFuture;
   }
 
   public synchronized void stop() {
@@ -104,6 +206,16 @@ public class TorOnionProxyInstance implements JavaTorConnexion {
     }
     startThread = null;
     progress = 0;
+    health.onStop();
+    if (bootstrapMonitor != null) {
+      bootstrapMonitor.stop();
+      bootstrapMonitor = null;
+    }
+    // wakeup waiters
+    if (!readyFuture.isDone()) {
+      readyFuture.completeExceptionally(new NotifiableException("Tor stopped"));
+    }
+    readyFuture = new CompletableFuture<>();
 
     try {
       onionProxyManager.stop();
@@ -131,37 +243,45 @@ public class TorOnionProxyInstance implements JavaTorConnexion {
     onionProxyManager.getContext().getConfig().getInstallDir().delete();
   }
 
-  public void changeIdentity() {
-    progress = PROGRESS_CONNECTING;
-    if (!onionProxyManager.setNewIdentity()) {
-      log.warn("changeIdentity failed, restarting TOR...");
-      stop();
-      start();
+  @Override
+  public boolean changeIdentity() {
+    // NEWNYM keeps TOR bootstrapped, readiness is unchanged
+    if (onionProxyManager.setNewIdentity()) {
+      return true;
     }
+    if (onionProxyManager.isRunning()) {
+      // NEWNYM refused, keep current circuits rather than restarting TOR
+      log.warn("changeIdentity failed");
+      return false;
+    }
+    log.warn("changeIdentity failed, restarting TOR...");
+    stop();
+    start();
+    return false;
   }
 
   @Override
   public int getProgress() {
-    checkReady(); // update progress
+    if (progress == 100 && !onionProxyManager.isRunning()) {
+      if (log.isDebugEnabled()) {
+        log.debug("TOR disconnected!");
+      }
+      progress = PROGRESS_DISCONNECTED;
+    }
     return progress;
   }
 
   @Override
   public CliProxy getTorProxy() throws NotifiableException {
-    if (torProxy == null) {
-      if (startThread == null) {
-        log.error("getTorProxy() called when not started");
-        return null;
-      }
-      waitReady();
-      try {
-        torProxy =
-            new CliProxy(
-                CliProxyProtocol.SOCKS, "127.0.0.1", onionProxyManager.getIPv4LocalHostSocksPort());
-      } catch (Exception e) {
-        log.error("Unable to get local tor proxy", e);
-      }
+    if (startThread == null && !readyFuture.isDone()) {
+      log.error("getTorProxy() called when not started");
+      return null;
     }
-    return torProxy;
+    return waitReady();
+  }
+
+  @Override
+  public String toString() {
+    return "TorOnionProxyInstance[" + name + "]";
   }
 }
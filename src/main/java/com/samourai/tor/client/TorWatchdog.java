@@ -0,0 +1,58 @@
+package com.samourai.tor.client;
+
+import com.samourai.whirlpool.client.wallet.orchestrator.AbstractOrchestrator;
+import java.lang.invoke.MethodHandles;
+import java.util.Collection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically checks TOR processes through their control port, and restarts dead ones with
+ * exponential backoff. Dead processes are skipped when leasing connexions until they recover.
+ */
+public class TorWatchdog extends AbstractOrchestrator {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private Collection<TorOnionProxyInstance> torInstances;
+  private Runnable onRestart;
+
+  public TorWatchdog(
+      int loopDelay, Collection<TorOnionProxyInstance> torInstances, Runnable onRestart) {
+    super(loopDelay);
+    this.torInstances = torInstances;
+    this.onRestart = onRestart;
+  }
+
+  @Override
+  protected void runOrchestrator() {
+    for (TorOnionProxyInstance torInstance : torInstances) {
+      try {
+        check(torInstance);
+      } catch (Exception e) {
+        log.error("", e);
+      }
+    }
+  }
+
+  private void check(TorOnionProxyInstance torInstance) {
+    TorInstanceHealth health = torInstance.getHealth();
+    if (torInstance.isStarting()) {
+      // bootstrap in progress
+      return;
+    }
+    if (torInstance.isReady() && torInstance.isAlive()) {
+      health.onAlive();
+      return;
+    }
+
+    // died, or failed to start
+    if (!health.isDown()) {
+      log.warn("TOR is down: " + health);
+    }
+    health.onDown();
+    if (health.isRestartDue()) {
+      torInstance.restart();
+      onRestart.run();
+    }
+  }
+}
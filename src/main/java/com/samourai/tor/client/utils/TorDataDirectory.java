@@ -0,0 +1,147 @@
+package com.samourai.tor.client.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.lang.invoke.MethodHandles;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Optional;
+import java.util.TimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent TOR data directory, reused across CLI restarts to skip downloading consensus and
+ * descriptors again. Locked while in use, so that concurrent CLI processes don't share it.
+ */
+public class TorDataDirectory {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  static final String ROOT_DIR = "whirlpool-cli-tor";
+  private static final String LOCK_FILE = "whirlpool-cli.lock";
+  private static final String[] CONSENSUS_FILES = {
+    "cached-microdesc-consensus", "cached-consensus"
+  };
+  private static final String[] CACHED_FILES = {
+    "cached-microdesc-consensus",
+    "cached-consensus",
+    "cached-microdescs",
+    "cached-microdescs.new",
+    "cached-descriptors",
+    "cached-descriptors.new",
+    "cached-certs"
+  };
+  private static final String VALID_UNTIL = "valid-until ";
+  private static final int VALID_UNTIL_MAX_LINES = 20;
+  private static final long CONSENSUS_LIVE_DELAY = 24 * 60 * 60 * 1000; // tor's reasonably live
+
+  private File dir;
+  private FileChannel lockChannel;
+  private FileLock lock;
+
+  private TorDataDirectory(File dir, FileChannel lockChannel, FileLock lock) {
+    this.dir = dir;
+    this.lockChannel = lockChannel;
+    this.lock = lock;
+  }
+
+  /** Lock and check persistent directory, or empty when it is used by another CLI process. */
+  public static Optional<TorDataDirectory> open(String dirName) {
+    File dir = new File(ROOT_DIR, dirName).getAbsoluteFile();
+    try {
+      if (!dir.exists() && !dir.mkdirs()) {
+        log.error("Unable to create TOR data directory: " + dir.getAbsolutePath());
+        return Optional.empty();
+      }
+      FileChannel lockChannel =
+          FileChannel.open(
+              new File(dir, LOCK_FILE).toPath(),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE);
+      FileLock lock = lockChannel.tryLock();
+      if (lock == null) {
+        log.warn("TOR data directory is used by another process: " + dir.getAbsolutePath());
+        lockChannel.close();
+        return Optional.empty();
+      }
+      TorDataDirectory torDataDirectory = new TorDataDirectory(dir, lockChannel, lock);
+      torDataDirectory.checkIntegrity();
+      return Optional.of(torDataDirectory);
+    } catch (Exception e) {
+      log.error("Unable to open TOR data directory: " + dir.getAbsolutePath(), e);
+      return Optional.empty();
+    }
+  }
+
+  private void checkIntegrity() {
+    // empty files are leftovers from an interrupted write
+    for (String fileName : CACHED_FILES) {
+      File file = new File(dir, fileName);
+      if (file.exists() && file.length() == 0) {
+        delete(file, "empty");
+      }
+    }
+
+    // consensus must be parseable and still usable, otherwise tor would ignore it anyway
+    for (String fileName : CONSENSUS_FILES) {
+      File file = new File(dir, fileName);
+      if (file.exists()) {
+        Optional<Date> validUntil = readValidUntil(file);
+        if (!validUntil.isPresent()) {
+          delete(file, "invalid");
+        } else if (validUntil.get().getTime() + CONSENSUS_LIVE_DELAY < System.currentTimeMillis()) {
+          delete(file, "expired since " + validUntil.get());
+        } else if (log.isDebugEnabled()) {
+          log.debug(
+              "Reusing TOR consensus: " + file.getAbsolutePath() + " (" + validUntil.get() + ")");
+        }
+      }
+    }
+  }
+
+  private Optional<Date> readValidUntil(File file) {
+    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+      String line;
+      int nbLines = 0;
+      while ((line = reader.readLine()) != null && nbLines < VALID_UNTIL_MAX_LINES) {
+        if (line.startsWith(VALID_UNTIL)) {
+          SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+          dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+          return Optional.of(dateFormat.parse(line.substring(VALID_UNTIL.length()).trim()));
+        }
+        nbLines++;
+      }
+    } catch (Exception e) {
+      if (log.isDebugEnabled()) {
+        log.error("", e);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private void delete(File file, String reason) {
+    log.info("Clearing TOR cache file (" + reason + "): " + file.getAbsolutePath());
+    if (!file.delete()) {
+      log.warn("Unable to delete " + file.getAbsolutePath());
+    }
+  }
+
+  public synchronized void release() {
+    try {
+      if (lock != null) {
+        lock.release();
+        lock = null;
+      }
+      lockChannel.close();
+    } catch (Exception e) {
+      log.error("", e);
+    }
+  }
+
+  public File getDir() {
+    return dir;
+  }
+}
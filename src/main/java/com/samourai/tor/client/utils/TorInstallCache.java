@@ -0,0 +1,335 @@
+package com.samourai.tor.client.utils;
+
+import com.msopentech.thali.toronionproxy.FileUtilities;
+import com.msopentech.thali.toronionproxy.OsData;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.jar.JarEntry;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.bouncycastle.util.encoders.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of TOR resources (executable, geoip) in CLI data directory, extracted once per resource
+ * version and shared read-only by all TOR instances, across CLI restarts. Cached files are linked
+ * into each instance directory instead of being extracted again.
+ *
+ * <p>Cache directory is only accessible by its owner. Extracted files are checked against hashes
+ * computed from resource content in memory, before being moved to cache. Cached entries are found
+ * from jar entry metadata (size, crc), without reading resources again. Their hashes are stored
+ * with them and checked once per process, a corrupted entry is extracted again.
+ */
+public class TorInstallCache {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final String INSTALL_DIR = "install";
+  private static final String FILE_NAME = "file";
+  private static final String HASHES_FILE = ".sha256";
+
+  private static TorInstallCache instance;
+
+  private File rootDir;
+  private Set<String> verifiedKeys; // cache entries checked by this process
+
+  public static synchronized TorInstallCache getInstance() {
+    if (instance == null) {
+      File rootDir = new File(TorDataDirectory.ROOT_DIR, INSTALL_DIR).getAbsoluteFile();
+      instance = new TorInstallCache(rootDir);
+    }
+    return instance;
+  }
+
+  public TorInstallCache(File rootDir) {
+    this.rootDir = rootDir;
+    this.verifiedKeys = new HashSet<>();
+  }
+
+  /** Install a single file resource, and link it to destination. */
+  public void installFile(URL resource, File destination) throws IOException {
+    File cacheDir =
+        install(
+            resource,
+            (content, dir) -> {
+              Files.write(new File(dir, FILE_NAME).toPath(), content);
+              Map<String, String> expectedHashes = new LinkedHashMap<>();
+              expectedHashes.put(FILE_NAME, sha256(content));
+              return expectedHashes;
+            });
+    link(new File(cacheDir, FILE_NAME), destination);
+  }
+
+  /** Install a zip resource, and link its content to destination directory. */
+  public void installZip(URL resource, File destinationDir) throws IOException {
+    File cacheDir =
+        install(
+            resource,
+            (content, dir) -> {
+              FileUtilities.extractContentFromZip(dir, new ByteArrayInputStream(content));
+              return computeZipHashes(content);
+            });
+    for (File file : listFiles(cacheDir)) {
+      String path = computePath(cacheDir, file);
+      link(file, new File(destinationDir, path));
+    }
+  }
+
+  private synchronized File install(URL resource, Extractor extractor) throws IOException {
+    if (resource == null) {
+      throw new IOException("TOR resource not found");
+    }
+    secureRootDir();
+    String resourceKey = computeResourceKey(resource);
+    File cacheDir = new File(rootDir, resourceKey);
+    if (cacheDir.exists()) {
+      // complete (moved atomically), and only writable by current user
+      if (verifiedKeys.contains(resourceKey) || checkCached(cacheDir)) {
+        verifiedKeys.add(resourceKey);
+        if (log.isDebugEnabled()) {
+          log.debug("Using cached TOR resource: " + cacheDir.getAbsolutePath());
+        }
+        return cacheDir;
+      }
+      log.warn("Corrupted TOR resource in cache, installing again: " + cacheDir.getAbsolutePath());
+      FileUtilities.recursiveFileDelete(cacheDir);
+    }
+
+    // extract to temporary directory, then move it atomically (other CLI may be installing too)
+    log.info("Installing TOR resource to cache: " + cacheDir.getAbsolutePath());
+    File tmpDir = new File(rootDir, resourceKey + ".tmp-" + UUID.randomUUID());
+    if (!tmpDir.mkdirs()) {
+      throw new IOException("Unable to create directory: " + tmpDir.getAbsolutePath());
+    }
+    try {
+      byte[] content = readFully(resource.openStream());
+      Map<String, String> expectedHashes = extractor.extract(content, tmpDir);
+      verify(tmpDir, expectedHashes);
+      setPermissions(tmpDir);
+      writeHashes(tmpDir, expectedHashes);
+      try {
+        Files.move(tmpDir.toPath(), cacheDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        if (!cacheDir.exists()) {
+          throw e;
+        }
+        // installed concurrently by another CLI process of current user
+      }
+    } finally {
+      if (tmpDir.exists()) {
+        FileUtilities.recursiveFileDelete(tmpDir);
+      }
+    }
+    verifiedKeys.add(resourceKey);
+    return cacheDir;
+  }
+
+  // cached files must still match hashes stored at install time (disk corruption)
+  private boolean checkCached(File cacheDir) {
+    try {
+      verify(cacheDir, readHashes(cacheDir));
+      return true;
+    } catch (IOException e) {
+      if (log.isDebugEnabled()) {
+        log.debug("TOR resource check failed: " + e.getMessage());
+      }
+      return false;
+    }
+  }
+
+  private void writeHashes(File dir, Map<String, String> hashes) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, String> entry : hashes.entrySet()) {
+      sb.append(entry.getValue()).append("  ").append(entry.getKey()).append("\n");
+    }
+    File hashesFile = new File(dir, HASHES_FILE);
+    Files.write(hashesFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+    hashesFile.setWritable(false);
+  }
+
+  private Map<String, String> readHashes(File dir) throws IOException {
+    Map<String, String> hashes = new LinkedHashMap<>();
+    File hashesFile = new File(dir, HASHES_FILE);
+    for (String line : Files.readAllLines(hashesFile.toPath(), StandardCharsets.UTF_8)) {
+      String[] items = line.split("  ", 2);
+      if (items.length != 2) {
+        throw new IOException("Invalid hashes file: " + hashesFile.getAbsolutePath());
+      }
+      hashes.put(items[1], items[0]);
+    }
+    return hashes;
+  }
+
+  // extracted files must match resource content read in memory
+  private void verify(File dir, Map<String, String> expectedHashes) throws IOException {
+    List<File> files = listFiles(dir);
+    if (files.size() != expectedHashes.size()) {
+      throw new IOException("TOR resource extraction failed: unexpected files");
+    }
+    for (File file : files) {
+      String expectedHash = expectedHashes.get(computePath(dir, file));
+      if (expectedHash == null || !expectedHash.equals(sha256(Files.readAllBytes(file.toPath())))) {
+        throw new IOException("TOR resource extraction failed: " + file.getAbsolutePath());
+      }
+    }
+  }
+
+  private static Map<String, String> computeZipHashes(byte[] content) throws IOException {
+    Map<String, String> hashes = new LinkedHashMap<>();
+    try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(content))) {
+      ZipEntry zipEntry;
+      while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+        if (!zipEntry.isDirectory()) {
+          hashes.put(zipEntry.getName(), sha256(readEntry(zipInputStream)));
+        }
+      }
+    }
+    return hashes;
+  }
+
+  // resource version, from jar entry metadata or file attributes
+  protected static String computeResourceKey(URL resource) throws IOException {
+    URLConnection connection = resource.openConnection();
+    String identity;
+    if (connection instanceof JarURLConnection) {
+      JarEntry jarEntry = ((JarURLConnection) connection).getJarEntry();
+      identity = jarEntry.getName() + ":" + jarEntry.getSize() + ":" + jarEntry.getCrc();
+    } else {
+      identity =
+          resource
+              + ":"
+              + connection.getContentLengthLong()
+              + ":"
+              + connection.getLastModified();
+      connection.getInputStream().close();
+    }
+    return sha256(identity.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void secureRootDir() throws IOException {
+    if (!rootDir.exists() && !rootDir.mkdirs()) {
+      throw new IOException("Unable to create directory: " + rootDir.getAbsolutePath());
+    }
+    Path path = rootDir.toPath();
+    if (Files.getFileAttributeView(path, PosixFileAttributeView.class) != null) {
+      UserPrincipal user =
+          path.getFileSystem()
+              .getUserPrincipalLookupService()
+              .lookupPrincipalByName(System.getProperty("user.name"));
+      if (!user.equals(Files.getOwner(path))) {
+        throw new IOException(
+            "TOR install cache is not owned by current user: " + rootDir.getAbsolutePath());
+      }
+      Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rwx------"));
+    } else {
+      // owner only
+      rootDir.setReadable(false, false);
+      rootDir.setReadable(true, true);
+      rootDir.setWritable(false, false);
+      rootDir.setWritable(true, true);
+      rootDir.setExecutable(false, false);
+      rootDir.setExecutable(true, true);
+    }
+  }
+
+  private void link(File source, File destination) throws IOException {
+    File parent = destination.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+    }
+    Files.deleteIfExists(destination.toPath());
+    try {
+      Files.createLink(destination.toPath(), source.toPath());
+    } catch (Exception e) {
+      // hard links not supported (filesystem boundary...)
+      if (log.isDebugEnabled()) {
+        log.debug("Hard link not supported, copying " + source.getAbsolutePath());
+      }
+      Files.copy(source.toPath(), destination.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+    }
+  }
+
+  private void setPermissions(File dir) {
+    // read-only for TOR instances (except on Windows, where read-only files can't be deleted)
+    boolean readOnly = !OsData.OsType.WINDOWS.equals(OsData.getOsType());
+    for (File file : listFiles(dir)) {
+      file.setReadable(true);
+      file.setExecutable(true);
+      if (readOnly) {
+        file.setWritable(false);
+      }
+    }
+  }
+
+  private List<File> listFiles(File dir) {
+    List<File> files = new ArrayList<>();
+    File[] children = dir.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        if (HASHES_FILE.equals(child.getName())) {
+          continue;
+        }
+        if (child.isDirectory()) {
+          files.addAll(listFiles(child));
+        } else {
+          files.add(child);
+        }
+      }
+    }
+    return files;
+  }
+
+  private static String computePath(File dir, File file) {
+    return dir.toPath().relativize(file.toPath()).toString().replace('\\', '/');
+  }
+
+  private static byte[] readFully(InputStream inputStream) throws IOException {
+    try (InputStream is = inputStream) {
+      return readEntry(is);
+    }
+  }
+
+  private static byte[] readEntry(InputStream is) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = is.read(buffer)) != -1) {
+      baos.write(buffer, 0, read);
+    }
+    return baos.toByteArray();
+  }
+
+  private static String sha256(byte[] content) throws IOException {
+    try {
+      return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(content));
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+  }
+
+  private interface Extractor {
+    /** @return expected hash of each extracted file, by relative path */
+    Map<String, String> extract(byte[] content, File dir) throws IOException;
+  }
+}
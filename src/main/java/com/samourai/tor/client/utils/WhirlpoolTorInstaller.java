@@ -6,7 +6,6 @@
 
 package com.samourai.tor.client.utils;
 
-import com.msopentech.thali.toronionproxy.FileUtilities;
 import com.msopentech.thali.toronionproxy.OsData;
 import com.msopentech.thali.toronionproxy.TorConfig;
 import com.msopentech.thali.toronionproxy.TorInstaller;
@@ -16,6 +15,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.net.URL;
 import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,10 +49,9 @@ public final class WhirlpoolTorInstaller extends TorInstaller {
   public void setup() throws IOException {
     LOG.info("Setting up tor");
     LOG.info("Installing resources: geoip=" + this.config.getGeoIpFile().getAbsolutePath());
-    FileUtilities.cleanInstallOneFile(
-        this.getAssetOrResourceByName("geoip"), this.config.getGeoIpFile());
-    FileUtilities.cleanInstallOneFile(
-        this.getAssetOrResourceByName("geoip6"), this.config.getGeoIpv6File());
+    TorInstallCache installCache = TorInstallCache.getInstance();
+    installCache.installFile(getResourceByName("geoip"), this.config.getGeoIpFile());
+    installCache.installFile(getResourceByName("geoip6"), this.config.getGeoIpv6File());
 
     if (useExecutableFromZip) {
       setupTorExecutable();
@@ -65,10 +64,16 @@ public final class WhirlpoolTorInstaller extends TorInstaller {
   protected void setupTorExecutable() throws IOException {
     LOG.info("Installing tor executable: " + this.config.getTorExecutableFile().getAbsolutePath());
     File torParent = this.config.getTorExecutableFile().getParentFile();
-    FileUtilities.extractContentFromZip(
-        torParent.exists() ? torParent : this.config.getTorExecutableFile(),
-        this.getAssetOrResourceByName(getPathToTorExecutable() + "tor.zip"));
-    FileUtilities.setPerms(this.config.getTorExecutableFile());
+    // extracted once to cache, permissions are set there
+    TorInstallCache.getInstance()
+        .installZip(
+            getResourceByName(getPathToTorExecutable() + "tor.zip"),
+            torParent.exists() ? torParent : this.config.getTorExecutableFile());
+  }
+
+  // resource location, read by TorInstallCache only when not cached yet
+  private URL getResourceByName(String fileName) {
+    return getClass().getResource("/" + fileName);
   }
 
   public void updateTorConfigCustom(String content) throws IOException, TimeoutException {
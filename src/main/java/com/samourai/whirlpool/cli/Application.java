@@ -7,9 +7,11 @@ import com.samourai.whirlpool.cli.config.CliConfig;
 import com.samourai.whirlpool.cli.exception.NoSessionWalletException;
 import com.samourai.whirlpool.cli.run.RunCliCommand;
 import com.samourai.whirlpool.cli.run.RunCliInit;
+import com.samourai.whirlpool.cli.run.StartupPipeline;
 import com.samourai.whirlpool.cli.services.CliConfigService;
 import com.samourai.whirlpool.cli.services.CliTorClientService;
 import com.samourai.whirlpool.cli.services.CliWalletService;
+import com.samourai.whirlpool.cli.services.CliWarmUpService;
 import com.samourai.whirlpool.cli.services.WalletAggregateService;
 import com.samourai.whirlpool.cli.utils.CliUtils;
 import com.samourai.whirlpool.cli.wallet.CliWallet;
@@ -20,6 +22,7 @@ import java.lang.invoke.MethodHandles;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import org.bitcoinj.core.Context;
 import org.bitcoinj.core.NetworkParameters;
 import org.slf4j.Logger;
@@ -59,6 +62,7 @@ public class Application implements ApplicationRunner {
   @Autowired private CliTorClientService cliTorClientService;
   private static CliTorClientService cliTorClientServiceStatic;
   @Autowired private IHttpClient httpClient;
+  @Autowired private CliWarmUpService cliWarmUpService;
 
   public static void main(String... args) {
     // override configuration with local file
@@ -155,12 +159,31 @@ public class Application implements ApplicationRunner {
   }
 
   private void runCli() throws Exception {
-    // connect TOR
-    cliTorClientService.connect();
-
     // initialize bitcoinj context
     NetworkParameters params = cliConfig.getServer().getParams();
-    new Context(params);
+    Context context = new Context(params);
+
+    StartupPipeline pipeline = new StartupPipeline(context);
+    try {
+      runCli(pipeline);
+    } finally {
+      pipeline.shutdown();
+    }
+  }
+
+  private void runCli(StartupPipeline pipeline) throws Exception {
+    // connect TOR, bootstrapping in background
+    cliTorClientService.connect();
+    CompletableFuture<Void> torReady =
+        pipeline.submit(
+            "tor",
+            () -> {
+              cliTorClientService.waitReady();
+              return null;
+            });
+
+    // open connexions to server and backend as soon as each TOR connexion is ready
+    cliWarmUpService.warmUp();
 
     // check init
     if (appArgs.isInit() || (cliConfigService.isCliStatusNotInitialized() && listenPort == null)) {
@@ -168,13 +191,14 @@ public class Application implements ApplicationRunner {
       return;
     }
 
-    // check pushTxService
-    if (!pushTxService.testConnectivity()) {
-      throw new NotifiableException("Unable to connect to pushTxService");
-    }
+    // check pushTxService in background
+    CompletableFuture<Boolean> pushTxReady =
+        pipeline.submit("pushtx", () -> pushTxService.testConnectivity());
 
     // check cli initialized
     if (cliConfigService.isCliStatusNotInitialized()) {
+      checkPushTx(pipeline, pushTxReady);
+
       // not initialized
       if (log.isDebugEnabled()) {
         log.debug("CliStatus=" + cliConfigService.getCliStatus());
@@ -191,7 +215,7 @@ public class Application implements ApplicationRunner {
     }
 
     // check upgrade
-    boolean shouldRestart = cliConfigService.checkUpgrade();
+    boolean shouldRestart = pipeline.run("upgrade", () -> cliConfigService.checkUpgrade());
     if (shouldRestart) {
       log.warn("⣿ UPGRADE SUCCESS");
       log.warn("⣿ Please restart CLI.");
@@ -201,6 +225,8 @@ public class Application implements ApplicationRunner {
     if (!appArgs.isAuthenticate()
         && listenPort != null
         && !RunCliCommand.hasCommandToRun(appArgs, cliConfig)) {
+      checkPushTx(pipeline, pushTxReady);
+
       // no passphrase but listening => keep listening
       log.info(CliUtils.LOG_SEPARATOR);
       log.info("⣿ AUTHENTICATION REQUIRED");
@@ -213,17 +239,45 @@ public class Application implements ApplicationRunner {
     }
 
     // authenticate to open wallet when passphrase providen through arguments
-    String seedPassphrase = authenticate();
+    String seedPassphrase = pipeline.run("passphrase", () -> authenticate());
+
+    // fetch pools while opening wallet: response is cached (or shared) for wallet start
+    pipeline
+        .submit("pools", () -> cliWalletService.listPools(cliConfig))
+        .exceptionally(
+            e -> {
+              if (log.isDebugEnabled()) {
+                log.debug("pools prefetch failed: " + e.getMessage());
+              }
+              return null;
+            });
 
     // we may have authenticated from API in the meantime...
     CliWallet cliWallet =
-        cliWalletService.hasSessionWallet()
-            ? cliWalletService.getSessionWallet()
-            : cliWalletService.openWallet(seedPassphrase);
+        pipeline.run(
+            "wallet",
+            () ->
+                cliWalletService.hasSessionWallet()
+                    ? cliWalletService.getSessionWallet()
+                    : cliWalletService.openWallet(seedPassphrase));
+
+    // only wallet start waits for pushtx
+    try {
+      checkPushTx(pipeline, pushTxReady);
+    } catch (Exception e) {
+      cliWalletService.closeWallet();
+      throw e;
+    }
     log.info(CliUtils.LOG_SEPARATOR);
     log.info("⣿ AUTHENTICATION SUCCESS");
     log.info("⣿ Whirlpool is starting...");
     log.info(CliUtils.LOG_SEPARATOR);
+    if (torReady.isDone()) {
+      pipeline.logReport();
+    } else {
+      // mixs will wait for TOR
+      torReady.whenComplete((r, e) -> pipeline.logReport());
+    }
 
     if (RunCliCommand.hasCommandToRun(appArgs, cliConfig)) {
       // execute specific command
@@ -237,6 +291,13 @@ public class Application implements ApplicationRunner {
     }
   }
 
+  private void checkPushTx(StartupPipeline pipeline, CompletableFuture<Boolean> pushTxReady)
+      throws Exception {
+    if (!pipeline.join(pushTxReady)) {
+      throw new NotifiableException("Unable to connect to pushTxService");
+    }
+  }
+
   private void keepRunning() {
     while (true) {
       try {
@@ -29,6 +29,7 @@ public class ApplicationArgs {
   private static final String ARG_TX0_DELAY = "tx0-delay";
   private static final String ARG_TX0_MAX_OUTPUTS = "tx0-max-outputs";
   private static final String ARG_AGGREGATE_POSTMIX = "aggregate-postmix";
+  private static final String ARG_DRY_RUN = "dry-run";
   private static final String ARG_AUTO_AGGREGATE_POSTMIX = "auto-aggregate-postmix";
   private static final String ARG_AUTO_TX0 = "auto-tx0";
   private static final String ARG_AUTO_MIX = "auto-mix";
@@ -150,6 +151,10 @@ public class ApplicationArgs {
     return !StringUtils.isEmpty(getAggregatePostmix());
   }
 
+  public boolean isDryRun() {
+    return args.containsOption(ARG_DRY_RUN);
+  }
+
   public boolean isInit() {
     return args.containsOption(ARG_INIT);
   }
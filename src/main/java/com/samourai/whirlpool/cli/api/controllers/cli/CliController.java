@@ -1,5 +1,6 @@
 package com.samourai.whirlpool.cli.api.controllers.cli;
 
+import com.samourai.http.client.JavaHttpClient;
 import com.samourai.whirlpool.cli.api.controllers.AbstractRestController;
 import com.samourai.whirlpool.cli.api.protocol.CliApiEndpoint;
 import com.samourai.whirlpool.cli.api.protocol.rest.ApiCliInitRequest;
@@ -8,8 +9,11 @@ import com.samourai.whirlpool.cli.api.protocol.rest.ApiCliLoginRequest;
 import com.samourai.whirlpool.cli.api.protocol.rest.ApiCliStateResponse;
 import com.samourai.whirlpool.cli.beans.CliStatus;
 import com.samourai.whirlpool.cli.config.CliConfig;
+import com.samourai.whirlpool.cli.services.CircuitBreakerService;
 import com.samourai.whirlpool.cli.services.CliConfigService;
+import com.samourai.whirlpool.cli.services.CliTorClientService;
 import com.samourai.whirlpool.cli.services.CliWalletService;
+import com.samourai.whirlpool.cli.services.JavaStompClientService;
 import com.samourai.whirlpool.client.exception.NotifiableException;
 import javax.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,7 +28,11 @@ import org.springframework.web.bind.annotation.RestController;
 public class CliController extends AbstractRestController {
   @Autowired private CliConfigService cliConfigService;
   @Autowired private CliWalletService cliWalletService;
+  @Autowired private CliTorClientService cliTorClientService;
   @Autowired private CliConfig cliConfig;
+  @Autowired private JavaHttpClient httpClient;
+  @Autowired private CircuitBreakerService circuitBreakerService;
+  @Autowired private JavaStompClientService stompClientService;
 
   @RequestMapping(value = CliApiEndpoint.REST_CLI, method = RequestMethod.GET)
   public ApiCliStateResponse state(@RequestHeader HttpHeaders headers) throws Exception {
@@ -32,7 +40,15 @@ public class CliController extends AbstractRestController {
 
     ApiCliStateResponse response =
         new ApiCliStateResponse(
-            cliWalletService.getCliState(), cliConfig.getServer(), cliConfig.getTor());
+            cliWalletService.getCliState(),
+            cliConfig.getServer(),
+            cliConfig.getTor(),
+            cliTorClientService.getIdentityMetrics(),
+            cliTorClientService.getInstancesHealth(),
+            httpClient.getResponseCache(),
+            httpClient.getRetryHandler(),
+            circuitBreakerService.getCircuitBreakers(),
+            stompClientService.getStompTransport().getStats());
     return response;
   }
 
@@ -0,0 +1,39 @@
+package com.samourai.whirlpool.cli.api.protocol.rest;
+
+import com.samourai.whirlpool.cli.utils.CircuitBreaker;
+
+public class ApiCircuitBreaker {
+  private String name;
+  private CircuitBreaker.State state;
+  private int nbFailures;
+  private long nbTrips;
+  private long nbRejected;
+
+  public ApiCircuitBreaker(CircuitBreaker circuitBreaker) {
+    this.name = circuitBreaker.getName();
+    this.state = circuitBreaker.getState();
+    this.nbFailures = circuitBreaker.getNbFailures();
+    this.nbTrips = circuitBreaker.getNbTrips();
+    this.nbRejected = circuitBreaker.getNbRejected();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public CircuitBreaker.State getState() {
+    return state;
+  }
+
+  public int getNbFailures() {
+    return nbFailures;
+  }
+
+  public long getNbTrips() {
+    return nbTrips;
+  }
+
+  public long getNbRejected() {
+    return nbRejected;
+  }
+}
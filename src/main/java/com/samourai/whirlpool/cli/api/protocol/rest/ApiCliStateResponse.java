@@ -1,8 +1,17 @@
 package com.samourai.whirlpool.cli.api.protocol.rest;
 
+import com.samourai.http.client.HttpResponseCache;
+import com.samourai.http.client.HttpRetryHandler;
+import com.samourai.stomp.client.StompTransportStats;
+import com.samourai.tor.client.TorIdentityMetrics;
+import com.samourai.tor.client.TorInstanceHealth;
 import com.samourai.whirlpool.cli.beans.CliState;
 import com.samourai.whirlpool.cli.beans.CliStatus;
+import com.samourai.whirlpool.cli.utils.CircuitBreaker;
 import com.samourai.whirlpool.client.wallet.beans.WhirlpoolServer;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class ApiCliStateResponse {
   private CliStatus cliStatus;
@@ -14,8 +23,23 @@ public class ApiCliStateResponse {
   private String serverUrl;
   private String serverName;
   private boolean tor;
+  private ApiTorIdentityMetrics torIdentity;
+  private Collection<ApiTorInstanceHealth> torInstances;
+  private ApiHttpCache httpCache;
+  private ApiHttpRetry httpRetry;
+  private Collection<ApiCircuitBreaker> circuitBreakers;
+  private ApiStompTransports stompTransports;
 
-  public ApiCliStateResponse(CliState cliState, WhirlpoolServer server, boolean tor) {
+  public ApiCliStateResponse(
+      CliState cliState,
+      WhirlpoolServer server,
+      boolean tor,
+      Optional<TorIdentityMetrics> torIdentity,
+      Optional<Collection<TorInstanceHealth>> torInstances,
+      HttpResponseCache httpCache,
+      HttpRetryHandler httpRetry,
+      Collection<CircuitBreaker> circuitBreakers,
+      StompTransportStats stompTransports) {
     this.cliStatus = cliState.getCliStatus();
     this.cliMessage = cliState.getCliMessage();
     this.loggedIn = cliState.isLoggedIn();
@@ -25,6 +49,25 @@ public class ApiCliStateResponse {
     this.serverUrl = server.getServerUrl();
     this.serverName = server.name();
     this.tor = tor;
+    this.torIdentity =
+        torIdentity.map(metrics -> new ApiTorIdentityMetrics(metrics)).orElse(null);
+    this.torInstances =
+        torInstances
+            .map(
+                healths ->
+                    healths
+                        .stream()
+                        .map(health -> new ApiTorInstanceHealth(health))
+                        .collect(Collectors.toList()))
+            .orElse(null);
+    this.httpCache = new ApiHttpCache(httpCache);
+    this.httpRetry = new ApiHttpRetry(httpRetry);
+    this.circuitBreakers =
+        circuitBreakers
+            .stream()
+            .map(circuitBreaker -> new ApiCircuitBreaker(circuitBreaker))
+            .collect(Collectors.toList());
+    this.stompTransports = new ApiStompTransports(stompTransports);
   }
 
   public CliStatus getCliStatus() {
@@ -58,4 +101,28 @@ public class ApiCliStateResponse {
   public boolean isTor() {
     return tor;
   }
+
+  public ApiTorIdentityMetrics getTorIdentity() {
+    return torIdentity;
+  }
+
+  public Collection<ApiTorInstanceHealth> getTorInstances() {
+    return torInstances;
+  }
+
+  public ApiHttpCache getHttpCache() {
+    return httpCache;
+  }
+
+  public ApiHttpRetry getHttpRetry() {
+    return httpRetry;
+  }
+
+  public Collection<ApiCircuitBreaker> getCircuitBreakers() {
+    return circuitBreakers;
+  }
+
+  public ApiStompTransports getStompTransports() {
+    return stompTransports;
+  }
 }
@@ -0,0 +1,45 @@
+package com.samourai.whirlpool.cli.api.protocol.rest;
+
+import com.samourai.http.client.HttpResponseCache;
+
+public class ApiHttpCache {
+  private long nbHits;
+  private long nbMisses;
+  private long nbRevalidations;
+  private long nbEvictions;
+  private long nbBytes;
+  private int nbEntries;
+
+  public ApiHttpCache(HttpResponseCache httpCache) {
+    this.nbHits = httpCache.getNbHits();
+    this.nbMisses = httpCache.getNbMisses();
+    this.nbRevalidations = httpCache.getNbRevalidations();
+    this.nbEvictions = httpCache.getNbEvictions();
+    this.nbBytes = httpCache.getNbBytes();
+    this.nbEntries = httpCache.getNbEntries();
+  }
+
+  public long getNbHits() {
+    return nbHits;
+  }
+
+  public long getNbMisses() {
+    return nbMisses;
+  }
+
+  public long getNbRevalidations() {
+    return nbRevalidations;
+  }
+
+  public long getNbEvictions() {
+    return nbEvictions;
+  }
+
+  public long getNbBytes() {
+    return nbBytes;
+  }
+
+  public int getNbEntries() {
+    return nbEntries;
+  }
+}
@@ -0,0 +1,27 @@
+package com.samourai.whirlpool.cli.api.protocol.rest;
+
+import com.samourai.http.client.HttpRetryHandler;
+
+public class ApiHttpRetry {
+  private long nbRetries;
+  private long nbHedges;
+  private long nbHedgeWins;
+
+  public ApiHttpRetry(HttpRetryHandler httpRetry) {
+    this.nbRetries = httpRetry.getNbRetries();
+    this.nbHedges = httpRetry.getNbHedges();
+    this.nbHedgeWins = httpRetry.getNbHedgeWins();
+  }
+
+  public long getNbRetries() {
+    return nbRetries;
+  }
+
+  public long getNbHedges() {
+    return nbHedges;
+  }
+
+  public long getNbHedgeWins() {
+    return nbHedgeWins;
+  }
+}
@@ -0,0 +1,39 @@
+package com.samourai.whirlpool.cli.api.protocol.rest;
+
+import com.samourai.stomp.client.StompTransportStats;
+
+public class ApiStompTransport {
+  private String name;
+  private long nbConnects;
+  private long nbFailures;
+  private Long latencyMedian;
+  private Long latencyP95;
+
+  public ApiStompTransport(StompTransportStats.TransportStats transport) {
+    this.name = transport.getName();
+    this.nbConnects = transport.getNbConnects();
+    this.nbFailures = transport.getNbFailures();
+    this.latencyMedian = transport.getLatencyMedian();
+    this.latencyP95 = transport.getLatencyP95();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getNbConnects() {
+    return nbConnects;
+  }
+
+  public long getNbFailures() {
+    return nbFailures;
+  }
+
+  public Long getLatencyMedian() {
+    return latencyMedian;
+  }
+
+  public Long getLatencyP95() {
+    return latencyP95;
+  }
+}
@@ -0,0 +1,35 @@
+package com.samourai.whirlpool.cli.api.protocol.rest;
+
+import com.samourai.stomp.client.StompTransportStats;
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class ApiStompTransports {
+  private Map<String, String> preferredTransports;
+  private Collection<ApiStompTransport> transports;
+  private long nbReconnects;
+
+  public ApiStompTransports(StompTransportStats stats) {
+    this.preferredTransports = stats.getPreferredTransports();
+    this.transports =
+        stats
+            .getTransports()
+            .stream()
+            .map(transport -> new ApiStompTransport(transport))
+            .collect(Collectors.toList());
+    this.nbReconnects = stats.getNbReconnects();
+  }
+
+  public Map<String, String> getPreferredTransports() {
+    return preferredTransports;
+  }
+
+  public Collection<ApiStompTransport> getTransports() {
+    return transports;
+  }
+
+  public long getNbReconnects() {
+    return nbReconnects;
+  }
+}
@@ -0,0 +1,69 @@
+package com.samourai.whirlpool.cli.api.protocol.rest;
+
+import com.samourai.tor.client.TorIdentityMetrics;
+
+public class ApiTorIdentityMetrics {
+  private long nbRequests;
+  private long nbCoalesced;
+  private long nbRotations;
+  private long nbRotationsFailed;
+  private long rotationDurationAvg;
+  private long rotationDurationLast;
+  private Long lastRotation;
+  private long nbPrebuilds;
+  private long nbPrebuildsFailed;
+  private long prebuildDurationAvg;
+
+  public ApiTorIdentityMetrics(TorIdentityMetrics metrics) {
+    this.nbRequests = metrics.getNbRequests();
+    this.nbCoalesced = metrics.getNbCoalesced();
+    this.nbRotations = metrics.getNbRotations();
+    this.nbRotationsFailed = metrics.getNbRotationsFailed();
+    this.rotationDurationAvg = metrics.getRotationDurationAvg();
+    this.rotationDurationLast = metrics.getRotationDurationLast();
+    this.lastRotation = metrics.getLastRotation();
+    this.nbPrebuilds = metrics.getNbPrebuilds();
+    this.nbPrebuildsFailed = metrics.getNbPrebuildsFailed();
+    this.prebuildDurationAvg = metrics.getPrebuildDurationAvg();
+  }
+
+  public long getNbRequests() {
+    return nbRequests;
+  }
+
+  public long getNbCoalesced() {
+    return nbCoalesced;
+  }
+
+  public long getNbRotations() {
+    return nbRotations;
+  }
+
+  public long getNbRotationsFailed() {
+    return nbRotationsFailed;
+  }
+
+  public long getRotationDurationAvg() {
+    return rotationDurationAvg;
+  }
+
+  public long getRotationDurationLast() {
+    return rotationDurationLast;
+  }
+
+  public Long getLastRotation() {
+    return lastRotation;
+  }
+
+  public long getNbPrebuilds() {
+    return nbPrebuilds;
+  }
+
+  public long getNbPrebuildsFailed() {
+    return nbPrebuildsFailed;
+  }
+
+  public long getPrebuildDurationAvg() {
+    return prebuildDurationAvg;
+  }
+}
@@ -0,0 +1,45 @@
+package com.samourai.whirlpool.cli.api.protocol.rest;
+
+import com.samourai.tor.client.TorInstanceHealth;
+
+public class ApiTorInstanceHealth {
+  private String name;
+  private boolean down;
+  private Long uptime;
+  private Long bootstrapDuration;
+  private int nbRestarts;
+  private int nbFailures;
+
+  public ApiTorInstanceHealth(TorInstanceHealth health) {
+    this.name = health.getName();
+    this.down = health.isDown();
+    this.uptime = health.getUptime();
+    this.bootstrapDuration = health.getBootstrapDuration();
+    this.nbRestarts = health.getNbRestarts();
+    this.nbFailures = health.getNbFailures();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isDown() {
+    return down;
+  }
+
+  public Long getUptime() {
+    return uptime;
+  }
+
+  public Long getBootstrapDuration() {
+    return bootstrapDuration;
+  }
+
+  public int getNbRestarts() {
+    return nbRestarts;
+  }
+
+  public int getNbFailures() {
+    return nbFailures;
+  }
+}
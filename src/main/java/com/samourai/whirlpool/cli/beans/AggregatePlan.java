@@ -0,0 +1,109 @@
+package com.samourai.whirlpool.cli.beans;
+
+import com.samourai.wallet.api.backend.beans.UnspentResponse;
+import java.util.List;
+
+public class AggregatePlan {
+  private long feeSatPerByte;
+  private List<Batch> batches;
+  private List<UnspentResponse.UnspentOutput> dust; // not worth spending at this fee rate
+
+  public AggregatePlan(
+      long feeSatPerByte, List<Batch> batches, List<UnspentResponse.UnspentOutput> dust) {
+    this.feeSatPerByte = feeSatPerByte;
+    this.batches = batches;
+    this.dust = dust;
+  }
+
+  public long getFeeSatPerByte() {
+    return feeSatPerByte;
+  }
+
+  public List<Batch> getBatches() {
+    return batches;
+  }
+
+  public List<UnspentResponse.UnspentOutput> getDust() {
+    return dust;
+  }
+
+  public long getFee() {
+    return batches.stream().mapToLong(batch -> batch.getFee()).sum();
+  }
+
+  public long getDustValue() {
+    return dust.stream().mapToLong(utxo -> utxo.value).sum();
+  }
+
+  public String toReport() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(
+        "Aggregate plan at "
+            + feeSatPerByte
+            + " sat/vB: "
+            + batches.size()
+            + " tx, "
+            + getFee()
+            + " sats fees, "
+            + dust.size()
+            + " dust utxos left ("
+            + getDustValue()
+            + " sats)");
+    int i = 1;
+    for (Batch batch : batches) {
+      sb.append(
+          "\n • tx #"
+              + i
+              + ": "
+              + batch.getUtxos().size()
+              + " utxos, "
+              + batch.getVsize()
+              + " vB, "
+              + batch.getFee()
+              + " sats fee, "
+              + batch.getValue()
+              + " sats => "
+              + batch.getDestinationValue()
+              + " sats");
+      i++;
+    }
+    return sb.toString();
+  }
+
+  /** One aggregate tx: N inputs, 1 output. */
+  public static class Batch {
+    private List<UnspentResponse.UnspentOutput> utxos;
+    private int weight;
+    private long fee;
+
+    public Batch(List<UnspentResponse.UnspentOutput> utxos, int weight, long fee) {
+      this.utxos = utxos;
+      this.weight = weight;
+      this.fee = fee;
+    }
+
+    public List<UnspentResponse.UnspentOutput> getUtxos() {
+      return utxos;
+    }
+
+    public int getWeight() {
+      return weight;
+    }
+
+    public int getVsize() {
+      return (weight + 3) / 4;
+    }
+
+    public long getFee() {
+      return fee;
+    }
+
+    public long getValue() {
+      return utxos.stream().mapToLong(utxo -> utxo.value).sum();
+    }
+
+    public long getDestinationValue() {
+      return getValue() - fee;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.samourai.whirlpool.cli.beans;
+
+import com.samourai.wallet.api.backend.beans.UnspentResponse;
+import java.util.List;
+
+/** Utxos of deposit, premix and postmix accounts, fetched together. */
+public class WalletSnapshot {
+  private List<UnspentResponse.UnspentOutput> depositUtxos;
+  private List<UnspentResponse.UnspentOutput> premixUtxos;
+  private List<UnspentResponse.UnspentOutput> postmixUtxos;
+  private long fetchTime;
+
+  public WalletSnapshot(
+      List<UnspentResponse.UnspentOutput> depositUtxos,
+      List<UnspentResponse.UnspentOutput> premixUtxos,
+      List<UnspentResponse.UnspentOutput> postmixUtxos,
+      long fetchTime) {
+    this.depositUtxos = depositUtxos;
+    this.premixUtxos = premixUtxos;
+    this.postmixUtxos = postmixUtxos;
+    this.fetchTime = fetchTime;
+  }
+
+  public List<UnspentResponse.UnspentOutput> getDepositUtxos() {
+    return depositUtxos;
+  }
+
+  public List<UnspentResponse.UnspentOutput> getPremixUtxos() {
+    return premixUtxos;
+  }
+
+  public List<UnspentResponse.UnspentOutput> getPostmixUtxos() {
+    return postmixUtxos;
+  }
+
+  public long getFetchTime() {
+    return fetchTime;
+  }
+
+  public long getDepositBalance() {
+    return computeBalance(depositUtxos);
+  }
+
+  public long getPremixBalance() {
+    return computeBalance(premixUtxos);
+  }
+
+  public long getPostmixBalance() {
+    return computeBalance(postmixUtxos);
+  }
+
+  public long getTotalBalance() {
+    return getDepositBalance() + getPremixBalance() + getPostmixBalance();
+  }
+
+  private static long computeBalance(List<UnspentResponse.UnspentOutput> utxos) {
+    return utxos.stream().mapToLong(utxo -> utxo.value).sum();
+  }
+}
@@ -34,6 +34,8 @@ public abstract class CliConfigFile {
   @NotEmpty private String proxy;
   private Optional<CliProxy> _cliProxy;
   @NotEmpty private MixConfig mix;
+  @NotEmpty private CircuitBreakerConfig circuitBreaker;
+  @NotEmpty private boolean jsonAfterburner;
 
   private static final String PUSHTX_AUTO = "auto";
   private static final String PUSHTX_INTERACTIVE = "interactive";
@@ -57,6 +59,8 @@ public abstract class CliConfigFile {
     this.refreshPoolsDelay = copy.refreshPoolsDelay;
     this.proxy = copy.proxy;
     this.mix = new MixConfig(copy.mix);
+    this.circuitBreaker = new CircuitBreakerConfig(copy.circuitBreaker);
+    this.jsonAfterburner = copy.jsonAfterburner;
   }
 
   public int getVersion() {
@@ -182,6 +186,22 @@ public abstract class CliConfigFile {
     this.mix = mix;
   }
 
+  public CircuitBreakerConfig getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  public void setCircuitBreaker(CircuitBreakerConfig circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  public boolean getJsonAfterburner() {
+    return jsonAfterburner;
+  }
+
+  public void setJsonAfterburner(boolean jsonAfterburner) {
+    this.jsonAfterburner = jsonAfterburner;
+  }
+
   public static class MixConfig {
     @NotEmpty private int clients;
     @NotEmpty private int clientDelay;
@@ -265,11 +285,17 @@ public abstract class CliConfigFile {
     public static final String EXECUTABLE_AUTO = "auto";
     public static final String EXECUTABLE_LOCAL = "local";
     @NotEmpty private String executable;
+    @NotEmpty private int instances;
+    @NotEmpty private boolean singleProcess;
+    @NotEmpty private boolean persistent;
 
     public TorConfig() {}
 
     public TorConfig(TorConfig copy) {
       this.executable = copy.executable;
+      this.instances = copy.instances;
+      this.singleProcess = copy.singleProcess;
+      this.persistent = copy.persistent;
     }
 
     public String getExecutable() {
@@ -288,9 +314,71 @@ public abstract class CliConfigFile {
       return EXECUTABLE_LOCAL.equals(this.executable);
     }
 
+    public int getInstances() {
+      return instances;
+    }
+
+    public void setInstances(int instances) {
+      this.instances = instances;
+    }
+
+    public boolean isSingleProcess() {
+      return singleProcess;
+    }
+
+    public void setSingleProcess(boolean singleProcess) {
+      this.singleProcess = singleProcess;
+    }
+
+    public boolean isPersistent() {
+      return persistent;
+    }
+
+    public void setPersistent(boolean persistent) {
+      this.persistent = persistent;
+    }
+
     public Map<String, String> getConfigInfo() {
       Map<String, String> configInfo = new HashMap<>();
       configInfo.put("cli/tor/executable", executable);
+      configInfo.put("cli/tor/instances", Integer.toString(instances));
+      configInfo.put("cli/tor/singleProcess", Boolean.toString(singleProcess));
+      configInfo.put("cli/tor/persistent", Boolean.toString(persistent));
+      return configInfo;
+    }
+  }
+
+  public static class CircuitBreakerConfig {
+    @NotEmpty private int failures;
+    @NotEmpty private int openDelay;
+
+    public CircuitBreakerConfig() {}
+
+    public CircuitBreakerConfig(CircuitBreakerConfig copy) {
+      this.failures = copy.failures;
+      this.openDelay = copy.openDelay;
+    }
+
+    public int getFailures() {
+      return failures;
+    }
+
+    public void setFailures(int failures) {
+      this.failures = failures;
+    }
+
+    public int getOpenDelay() {
+      return openDelay;
+    }
+
+    public void setOpenDelay(int openDelay) {
+      this.openDelay = openDelay;
+    }
+
+    public Map<String, String> getConfigInfo() {
+      Map<String, String> configInfo = new HashMap<>();
+      configInfo.put("cli/circuitBreaker/failures", Integer.toString(failures));
+      configInfo.put("cli/circuitBreaker/openDelay", Integer.toString(openDelay));
       return configInfo;
     }
   }
@@ -319,7 +407,7 @@ public abstract class CliConfigFile {
     return config;
   }
 
-  private String computeServerUrl() {
+  public String computeServerUrl() {
     // better clearnet over torV2 than flawed onionV2
     // String serverUrl = tor ? server.getServerOnionV2() : server.getServerUrl();
     String serverUrl = server.getServerUrl();
@@ -339,6 +427,8 @@ public abstract class CliConfigFile {
     configInfo.put("cli/refreshPoolsDelay", Integer.toString(refreshPoolsDelay));
     configInfo.put("cli/proxy", proxy != null ? ClientUtils.maskString(proxy) : "null");
     configInfo.putAll(mix.getConfigInfo());
+    configInfo.putAll(circuitBreaker.getConfigInfo());
+    configInfo.put("cli/jsonAfterburner", Boolean.toString(jsonAfterburner));
     return configInfo;
   }
 }
@@ -0,0 +1,27 @@
+package com.samourai.whirlpool.cli.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.samourai.whirlpool.cli.utils.JsonRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CliJsonConfig {
+
+  public CliJsonConfig() {}
+
+  // http client (backend, whirlpool server)
+  @Bean
+  JsonRegistry jsonRegistry(CliConfig cliConfig) {
+    return new JsonRegistry(cliConfig.getJsonAfterburner());
+  }
+
+  // REST API: Module beans are registered into the ObjectMapper of Spring MVC converters
+  @Bean
+  @ConditionalOnProperty(name = "cli.jsonAfterburner", havingValue = "true")
+  Module afterburnerModule() {
+    return new AfterburnerModule();
+  }
+}
@@ -2,6 +2,7 @@ package com.samourai.whirlpool.cli.config;
 
 import com.samourai.wallet.hd.java.HD_WalletFactoryJava;
 import com.samourai.wallet.segwit.bech32.Bech32UtilGeneric;
+import com.samourai.whirlpool.cli.services.CircuitBreakerService;
 import com.samourai.whirlpool.cli.services.CliPushTxService;
 import com.samourai.whirlpool.cli.services.SamouraiApiService;
 import com.samourai.whirlpool.client.tx0.Tx0Service;
@@ -47,8 +48,11 @@ public class CliServicesConfig {
   }
 
   @Bean
-  PushTxService pushTxService(CliConfig cliConfig, SamouraiApiService samouraiApiService) {
-    return new CliPushTxService(cliConfig, samouraiApiService);
+  PushTxService pushTxService(
+      CliConfig cliConfig,
+      SamouraiApiService samouraiApiService,
+      CircuitBreakerService circuitBreakerService) {
+    return new CliPushTxService(cliConfig, samouraiApiService, circuitBreakerService);
   }
 
   @Bean
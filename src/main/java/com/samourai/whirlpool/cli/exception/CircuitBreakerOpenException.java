@@ -0,0 +1,10 @@
+package com.samourai.whirlpool.cli.exception;
+
+import com.samourai.whirlpool.client.exception.NotifiableException;
+
+public class CircuitBreakerOpenException extends NotifiableException {
+
+  public CircuitBreakerOpenException(String host) {
+    super(host + " is unreachable, please retry later");
+  }
+}
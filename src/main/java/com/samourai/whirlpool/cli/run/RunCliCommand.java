@@ -33,17 +33,11 @@ public class RunCliCommand {
     if (appArgs.isDumpPayload()) {
       new RunDumpPayload(cliWalletService).run();
     } else if (appArgs.isAggregatePostmix()) {
-      CliWallet cliWallet = cliWalletService.getSessionWallet();
-
-      // go aggregate and consolidate
-      walletAggregateService.consolidateWallet(cliWallet);
-
-      // should we move to a specific address?
-      String toAddress = appArgs.getAggregatePostmix();
-      if (toAddress != null && !"true".equals(toAddress)) {
-        Bip84ApiWallet depositWallet = cliWallet.getWalletDeposit();
-        log.info(" • Moving funds to: " + toAddress);
-        walletAggregateService.toAddress(depositWallet, toAddress);
+      try {
+        runAggregatePostmix();
+      } finally {
+        // don't keep derived keys once command is done
+        walletAggregateService.clearDerivedKeys();
       }
     } else if (appArgs.isListPools()) {
       new RunListPools(cliWalletService, cliConfig).run();
@@ -56,6 +50,27 @@ public class RunCliCommand {
     }
   }
 
+  private void runAggregatePostmix() throws Exception {
+    CliWallet cliWallet = cliWalletService.getSessionWallet();
+
+    if (appArgs.isDryRun()) {
+      // report aggregate plans, don't broadcast
+      walletAggregateService.consolidateWalletDryRun(cliWallet);
+      return;
+    }
+
+    // go aggregate and consolidate
+    walletAggregateService.consolidateWallet(cliWallet);
+
+    // should we move to a specific address?
+    String toAddress = appArgs.getAggregatePostmix();
+    if (toAddress != null && !"true".equals(toAddress)) {
+      Bip84ApiWallet depositWallet = cliWallet.getWalletDeposit();
+      log.info(" • Moving funds to: " + toAddress);
+      walletAggregateService.toAddress(depositWallet, toAddress);
+    }
+  }
+
   public static boolean hasCommandToRun(ApplicationArgs appArgs, CliConfig cliConfig) {
     return appArgs.isDumpPayload() || appArgs.isAggregatePostmix() || appArgs.isListPools();
   }
@@ -0,0 +1,107 @@
+package com.samourai.whirlpool.cli.run;
+
+import java.lang.invoke.MethodHandles;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bitcoinj.core.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs independent startup phases concurrently, and reports how long each phase took. Phases are
+ * futures, so that a phase depending on another one just joins it.
+ */
+public class StartupPipeline {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private Context context;
+  private ExecutorService executor;
+  private long startTime;
+  private Map<String, long[]> phases; // phase => {start offset, duration}
+
+  public StartupPipeline(Context context) {
+    this.context = context;
+    AtomicInteger threadId = new AtomicInteger();
+    this.executor =
+        Executors.newCachedThreadPool(
+            r -> {
+              Thread thread = new Thread(r, "startup-" + threadId.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.startTime = System.currentTimeMillis();
+    this.phases = new LinkedHashMap<>();
+  }
+
+  /** Run phase in background. */
+  public <T> CompletableFuture<T> submit(String phase, Callable<T> task) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          // bitcoinj context is thread-local
+          Context.propagate(context);
+          try {
+            return run(phase, task);
+          } catch (Exception e) {
+            throw new CompletionException(e);
+          }
+        },
+        executor);
+  }
+
+  /** Run phase in current thread. */
+  public <T> T run(String phase, Callable<T> task) throws Exception {
+    long start = System.currentTimeMillis();
+    try {
+      return task.call();
+    } finally {
+      long duration = System.currentTimeMillis() - start;
+      synchronized (phases) {
+        phases.put(phase, new long[] {start - startTime, duration});
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("startup phase " + phase + ": " + duration + "ms");
+      }
+    }
+  }
+
+  /** Wait for a background phase, and rethrow its original exception. */
+  public <T> T join(CompletableFuture<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  public void logReport() {
+    StringBuilder sb = new StringBuilder();
+    synchronized (phases) {
+      for (Map.Entry<String, long[]> entry : phases.entrySet()) {
+        long[] timing = entry.getValue();
+        sb.append("\n • ")
+            .append(entry.getKey())
+            .append(": ")
+            .append(timing[1])
+            .append("ms (+")
+            .append(timing[0])
+            .append("ms)");
+      }
+    }
+    log.info("Startup completed in " + (System.currentTimeMillis() - startTime) + "ms:" + sb);
+  }
+
+  public void shutdown() {
+    // let running phases complete
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,48 @@
+package com.samourai.whirlpool.cli.services;
+
+import com.samourai.whirlpool.cli.config.CliConfig;
+import com.samourai.whirlpool.cli.utils.CircuitBreaker;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Service;
+
+// one CircuitBreaker per remote host (backend, coordinator, bitcoin node)
+@Service
+public class CircuitBreakerService {
+  private CliConfig cliConfig;
+  private Map<String, CircuitBreaker> circuitBreakers;
+
+  public CircuitBreakerService(CliConfig cliConfig) {
+    this.cliConfig = cliConfig;
+    this.circuitBreakers = new ConcurrentHashMap<>();
+  }
+
+  public CircuitBreaker getCircuitBreaker(String url) {
+    String host = computeHost(url);
+    return circuitBreakers.computeIfAbsent(
+        host,
+        h ->
+            new CircuitBreaker(
+                h,
+                cliConfig.getCircuitBreaker().getFailures(),
+                cliConfig.getCircuitBreaker().getOpenDelay() * 1000));
+  }
+
+  public Collection<CircuitBreaker> getCircuitBreakers() {
+    return new ArrayList<>(circuitBreakers.values());
+  }
+
+  private String computeHost(String url) {
+    try {
+      URI uri = new URI(url);
+      if (uri.getHost() != null) {
+        return uri.getPort() > 0 ? uri.getHost() + ":" + uri.getPort() : uri.getHost();
+      }
+    } catch (Exception e) {
+    }
+    return url;
+  }
+}
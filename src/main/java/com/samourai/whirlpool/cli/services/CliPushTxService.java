@@ -15,11 +15,16 @@ public class CliPushTxService implements PushTxService {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private CliConfig cliConfig;
   private SamouraiApiService samouraiApiService;
+  private CircuitBreakerService circuitBreakerService;
   private PushTxService pushTxService;
 
-  public CliPushTxService(CliConfig cliConfig, SamouraiApiService samouraiApiService) {
+  public CliPushTxService(
+      CliConfig cliConfig,
+      SamouraiApiService samouraiApiService,
+      CircuitBreakerService circuitBreakerService) {
     this.cliConfig = cliConfig;
     this.samouraiApiService = samouraiApiService;
+    this.circuitBreakerService = circuitBreakerService;
     this.pushTxService = new InteractivePushTxService();
   }
 
@@ -35,7 +40,11 @@ public class CliPushTxService implements PushTxService {
         log.debug("pushtx config changed: rpc");
       }
       String rpcClientUrl = cliConfig.getPushtx();
-      pushTxService = new JSONRpcClientServiceImpl(rpcClientUrl, cliConfig.getServer().getParams());
+      pushTxService =
+          new JSONRpcClientServiceImpl(
+              rpcClientUrl,
+              cliConfig.getServer().getParams(),
+              circuitBreakerService.getCircuitBreaker(rpcClientUrl));
     }
     if (cliConfig.isPushtxAuto() && !(pushTxService instanceof SamouraiApiService)) {
       if (log.isDebugEnabled()) {
@@ -2,10 +2,19 @@ package com.samourai.whirlpool.cli.services;
 
 import com.samourai.tor.client.JavaTorClient;
 import com.samourai.tor.client.JavaTorConnexion;
+import com.samourai.tor.client.TorIdentityMetrics;
+import com.samourai.tor.client.TorIdentityRotator;
+import com.samourai.tor.client.TorInstanceHealth;
 import com.samourai.whirlpool.cli.config.CliConfig;
 import com.samourai.whirlpool.client.exception.NotifiableException;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -17,10 +26,33 @@ public class CliTorClientService {
 
   private Optional<JavaTorClient> torClient;
   private CliConfig cliConfig;
+  private List<Consumer<Collection<JavaTorConnexion>>> identityListeners;
+  private TorIdentityRotator identityRotator;
 
   public CliTorClientService(CliConfig cliConfig) {
     this.torClient = Optional.empty();
     this.cliConfig = cliConfig;
+    this.identityListeners = new CopyOnWriteArrayList<>();
+    this.identityRotator =
+        new TorIdentityRotator(
+            torConnexions -> doChangeIdentity(torConnexions),
+            () -> getConnexionsIdle(),
+            cliConfig.computeServerUrl());
+  }
+
+  // notified with connexions which TOR circuits are renewed or closed
+  public void addIdentityListener(Consumer<Collection<JavaTorConnexion>> listener) {
+    identityListeners.add(listener);
+  }
+
+  private void notifyIdentityListeners(Collection<JavaTorConnexion> torConnexions) {
+    for (Consumer<Collection<JavaTorConnexion>> listener : identityListeners) {
+      try {
+        listener.accept(torConnexions);
+      } catch (Exception e) {
+        log.error("", e);
+      }
+    }
   }
 
   public void connect() {
@@ -38,24 +70,63 @@ public class CliTorClientService {
   }
 
   private void disconnect() {
-    Optional<JavaTorClient> torClient = getTorClient();
     if (torClient.isPresent()) {
+      Collection<JavaTorConnexion> torConnexions = torClient.get().getConnexions();
       torClient.get().disconnect();
+      notifyIdentityListeners(torConnexions);
     }
   }
 
   public void shutdown() {
+    identityRotator.shutdown();
     Optional<JavaTorClient> torClient = getTorClient();
     if (torClient.isPresent()) {
+      Collection<JavaTorConnexion> torConnexions = torClient.get().getConnexions();
       torClient.get().shutdown();
+      notifyIdentityListeners(torConnexions);
     }
   }
 
+  // asynchronous, concurrent requests are coalesced
   public void changeIdentity() {
+    if (getTorClient().isPresent()) {
+      identityRotator.requestRotation();
+    }
+  }
+
+  private boolean doChangeIdentity(Optional<Set<JavaTorConnexion>> torConnexions) {
     Optional<JavaTorClient> torClient = getTorClient();
-    if (torClient.isPresent()) {
-      torClient.get().changeIdentity();
+    if (!torClient.isPresent()) {
+      return false;
+    }
+    // listeners are notified by torClient with renewed connexions
+    if (torConnexions.isPresent()) {
+      return torClient.get().renew(torConnexions.get());
+    }
+    return torClient.get().changeIdentity();
+  }
+
+  private Collection<JavaTorConnexion> getConnexionsIdle() {
+    Optional<JavaTorClient> torClient = getTorClient();
+    if (!torClient.isPresent()) {
+      return new ArrayList<>();
+    }
+    return torClient.get().getConnexionsIdle();
+  }
+
+  public Optional<Collection<TorInstanceHealth>> getInstancesHealth() {
+    Optional<JavaTorClient> torClient = getTorClient();
+    if (!torClient.isPresent()) {
+      return Optional.empty();
+    }
+    return Optional.of(torClient.get().getInstancesHealth());
+  }
+
+  public Optional<TorIdentityMetrics> getIdentityMetrics() {
+    if (!cliConfig.getTor()) {
+      return Optional.empty();
     }
+    return Optional.of(identityRotator.getMetrics());
   }
 
   public Optional<JavaTorConnexion> getTorConnexion(boolean isRegisterOutput) {
@@ -71,16 +142,55 @@ public class CliTorClientService {
     return Optional.empty();
   }
 
+  // connexions leased to mixing clients
+  public Collection<JavaTorConnexion> getTorConnexionsMix() {
+    Optional<JavaTorClient> torClient = getTorClient();
+    if (!torClient.isPresent()) {
+      return new ArrayList<>();
+    }
+    return torClient.get().getConnexionsMix();
+  }
+
+  // connexion over other circuits than getTorConnexion(false), when available
+  public Optional<JavaTorConnexion> getTorConnexionAlternate() {
+    if (cliConfig.getTor()) {
+      Optional<JavaTorClient> torClient = getTorClient();
+      if (torClient.isPresent()) {
+        return torClient.get().getConnexionAlternate();
+      }
+    }
+    return Optional.empty();
+  }
+
+  // dedicated connexion for a mixing client, to release when mix is over
+  public Optional<JavaTorConnexion> leaseTorConnexion() {
+    if (cliConfig.getTor()) {
+      Optional<JavaTorClient> torClient = getTorClient();
+      if (torClient.isPresent()) {
+        return torClient.get().leaseConnexion();
+      }
+    }
+    return Optional.empty();
+  }
+
+  // asynchronous: released connexion is renewed by identityRotator before next lease
+  public void releaseTorConnexion(JavaTorConnexion torConnexion) {
+    Optional<JavaTorClient> torClient = getTorClient();
+    if (torClient.isPresent()) {
+      identityRotator.requestRotation(torClient.get().releaseConnexion(torConnexion));
+    }
+  }
+
   public Optional<Integer> getProgress() {
     Optional<JavaTorClient> torClient = getTorClient();
     if (!torClient.isPresent()) {
       return Optional.empty();
     }
 
-    // average progress of the two connexions
-    int progressShared = torClient.get().getConnexion(false).getProgress();
-    int progressRegOut = torClient.get().getConnexion(true).getProgress();
-    int progress = (progressShared + progressRegOut) / 2;
+    // average progress of all connexions
+    Collection<JavaTorConnexion> torConnexions = torClient.get().getConnexions();
+    int progress =
+        (int) torConnexions.stream().mapToInt(c -> c.getProgress()).average().orElse(0);
     return Optional.of(progress);
   }
 
@@ -92,7 +202,11 @@ public class CliTorClientService {
         }
         // instanciate TorClient
         try {
-          torClient = Optional.of(new JavaTorClient(cliConfig));
+          // renewed or restarted connexions: renew clients bound to previous circuits
+          torClient =
+              Optional.of(
+                  new JavaTorClient(
+                      cliConfig, torConnexions -> notifyIdentityListeners(torConnexions)));
         } catch (Exception e) {
           log.error("", e);
           torClient = Optional.empty();
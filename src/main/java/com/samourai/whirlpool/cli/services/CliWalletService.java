@@ -46,6 +46,7 @@ public class CliWalletService extends WhirlpoolWalletService {
   private CliConfigService cliConfigService;
   private HD_WalletFactoryJava hdWalletFactory;
   private WalletAggregateService walletAggregateService;
+  private WalletSnapshotService walletSnapshotService;
   private JavaHttpClient httpClient;
   private JavaStompClientService stompClientService;
   private CliTorClientService cliTorClientService;
@@ -58,6 +59,7 @@ public class CliWalletService extends WhirlpoolWalletService {
       CliConfigService cliConfigService,
       HD_WalletFactoryJava hdWalletFactory,
       WalletAggregateService walletAggregateService,
+      WalletSnapshotService walletSnapshotService,
       JavaHttpClient httpClient,
       JavaStompClientService stompClientService,
       CliTorClientService cliTorClientService) {
@@ -66,6 +68,7 @@ public class CliWalletService extends WhirlpoolWalletService {
     this.cliConfigService = cliConfigService;
     this.hdWalletFactory = hdWalletFactory;
     this.walletAggregateService = walletAggregateService;
+    this.walletSnapshotService = walletSnapshotService;
     this.httpClient = httpClient;
     this.stompClientService = stompClientService;
     this.cliTorClientService = cliTorClientService;
@@ -126,6 +129,7 @@ public class CliWalletService extends WhirlpoolWalletService {
             cliConfig,
             cliConfigService,
             walletAggregateService,
+            walletSnapshotService,
             cliTorClientService,
             this);
 
@@ -150,6 +154,7 @@ public class CliWalletService extends WhirlpoolWalletService {
     if (this.sessionWallet != null) {
       this.sessionWallet.stop();
       this.sessionWallet = null;
+      walletAggregateService.clearDerivedKeys();
     }
   }
 
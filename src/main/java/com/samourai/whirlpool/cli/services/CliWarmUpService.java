@@ -0,0 +1,117 @@
+package com.samourai.whirlpool.cli.services;
+
+import com.samourai.tor.client.JavaTorConnexion;
+import com.samourai.whirlpool.cli.beans.CliProxy;
+import com.samourai.whirlpool.cli.config.CliConfig;
+import com.samourai.whirlpool.cli.utils.CliUtils;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Opens connexions to whirlpool server and backend as soon as each TOR connexion is ready, so first
+ * requests don't pay circuit build, DNS and TLS handshake in series.
+ */
+@Service
+public class CliWarmUpService {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private CliConfig cliConfig;
+  private CliTorClientService torClientService;
+  private JavaHttpClientService httpClient;
+  private JavaStompClientService stompClientService;
+  private SamouraiApiService samouraiApiService;
+
+  public CliWarmUpService(
+      CliConfig cliConfig,
+      CliTorClientService torClientService,
+      JavaHttpClientService httpClient,
+      JavaStompClientService stompClientService,
+      SamouraiApiService samouraiApiService) {
+    this.cliConfig = cliConfig;
+    this.torClientService = torClientService;
+    this.httpClient = httpClient;
+    this.stompClientService = stompClientService;
+    this.samouraiApiService = samouraiApiService;
+  }
+
+  /** Non-blocking, completes when every route is warm (or failed to). */
+  public CompletableFuture<Void> warmUp() {
+    String serverUrl = cliConfig.computeServerUrl();
+    long startTime = System.currentTimeMillis();
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+    // shared route: pools, backend (prefetch fees), and STOMP when no dedicated connexion
+    futures.add(
+        warmUp(
+            "shared",
+            computeProxy(false),
+            cliProxy ->
+                CompletableFuture.allOf(
+                    httpClient.getAsyncClient().warmUp(cliProxy, serverUrl),
+                    stompClientService.getStompTransport().warmUp(cliProxy, serverUrl),
+                    CompletableFuture.runAsync(() -> fetchFees())),
+            startTime));
+
+    if (cliConfig.getTor()) {
+      // register-output route
+      futures.add(
+          warmUp(
+              "regOut",
+              computeProxy(true),
+              cliProxy -> httpClient.getAsyncClient().warmUp(cliProxy, serverUrl),
+              startTime));
+
+      // dedicated STOMP routes of mixing clients
+      for (JavaTorConnexion torConnexion : torClientService.getTorConnexionsMix()) {
+        futures.add(
+            warmUp(
+                torConnexion.toString(),
+                torConnexion.getReadyFuture().thenApply(torProxy -> Optional.of(torProxy)),
+                cliProxy -> stompClientService.getStompTransport().warmUp(cliProxy, serverUrl),
+                startTime));
+      }
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+  }
+
+  private CompletableFuture<Void> warmUp(
+      String route,
+      CompletableFuture<Optional<CliProxy>> proxyReady,
+      Function<Optional<CliProxy>, CompletableFuture<Void>> warmUpRoute,
+      long startTime) {
+    return proxyReady
+        .thenCompose(warmUpRoute)
+        .handle(
+            (result, e) -> {
+              if (e != null) {
+                if (log.isDebugEnabled()) {
+                  log.debug("warm-up failed for " + route + ": " + e.getMessage());
+                }
+              } else if (log.isDebugEnabled()) {
+                long elapsed = System.currentTimeMillis() - startTime;
+                log.debug("warm-up completed for " + route + " after " + elapsed + "ms");
+              }
+              return null;
+            });
+  }
+
+  private CompletableFuture<Optional<CliProxy>> computeProxy(boolean isRegisterOutput) {
+    return CliUtils.computeProxyAsync(isRegisterOutput, torClientService, cliConfig.getCliProxy());
+  }
+
+  private void fetchFees() {
+    try {
+      // response is cached for next fee lookup
+      samouraiApiService.fetchFees();
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
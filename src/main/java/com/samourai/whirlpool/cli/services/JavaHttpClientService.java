@@ -2,12 +2,17 @@ package com.samourai.whirlpool.cli.services;
 
 import com.samourai.http.client.JavaHttpClient;
 import com.samourai.whirlpool.cli.config.CliConfig;
+import com.samourai.whirlpool.cli.utils.JsonRegistry;
 import org.springframework.stereotype.Service;
 
 @Service
 public class JavaHttpClientService extends JavaHttpClient {
 
-  public JavaHttpClientService(CliTorClientService torClientService, CliConfig cliConfig) {
-    super(torClientService, cliConfig);
+  public JavaHttpClientService(
+      CliTorClientService torClientService,
+      CliConfig cliConfig,
+      CircuitBreakerService circuitBreakerService,
+      JsonRegistry jsonRegistry) {
+    super(torClientService, cliConfig, circuitBreakerService, jsonRegistry);
   }
 }
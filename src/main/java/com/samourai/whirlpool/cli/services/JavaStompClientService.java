@@ -3,21 +3,39 @@ package com.samourai.whirlpool.cli.services;
 import com.samourai.stomp.client.IStompClient;
 import com.samourai.stomp.client.IStompClientService;
 import com.samourai.stomp.client.JavaStompClient;
+import com.samourai.stomp.client.JavaStompTransport;
+import com.samourai.stomp.client.StompMessageTypeRegistry;
 import com.samourai.whirlpool.cli.config.CliConfig;
+import com.samourai.whirlpool.cli.utils.JsonRegistry;
 import org.springframework.stereotype.Service;
 
 @Service
 public class JavaStompClientService implements IStompClientService {
   private CliTorClientService torClientService;
   private CliConfig cliConfig;
+  private CircuitBreakerService circuitBreakerService;
+  private JavaStompTransport stompTransport;
+  private StompMessageTypeRegistry messageTypeRegistry;
 
-  public JavaStompClientService(CliTorClientService torClientService, CliConfig cliConfig) {
+  public JavaStompClientService(
+      CliTorClientService torClientService,
+      CliConfig cliConfig,
+      CircuitBreakerService circuitBreakerService,
+      JsonRegistry jsonRegistry) {
     this.torClientService = torClientService;
     this.cliConfig = cliConfig;
+    this.circuitBreakerService = circuitBreakerService;
+    this.stompTransport = new JavaStompTransport(torClientService, jsonRegistry);
+    this.messageTypeRegistry = new StompMessageTypeRegistry(jsonRegistry);
+  }
+
+  public JavaStompTransport getStompTransport() {
+    return stompTransport;
   }
 
   @Override
   public IStompClient newStompClient() {
-    return new JavaStompClient(torClientService, cliConfig);
+    return new JavaStompClient(
+        torClientService, cliConfig, stompTransport, circuitBreakerService, messageTypeRegistry);
   }
 }
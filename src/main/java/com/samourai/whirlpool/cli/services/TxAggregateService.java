@@ -1,16 +1,17 @@
 package com.samourai.whirlpool.cli.services;
 
 import com.samourai.wallet.bip69.BIP69InputComparator;
-import com.samourai.wallet.hd.HD_Address;
 import com.samourai.wallet.segwit.bech32.Bech32UtilGeneric;
-import com.samourai.wallet.util.FeeUtil;
-import com.samourai.wallet.util.TxUtil;
+import com.samourai.whirlpool.cli.utils.SegwitTxSigner;
+import com.samourai.whirlpool.cli.wallet.DerivedKeyCache;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.core.Transaction;
@@ -27,25 +28,24 @@ public class TxAggregateService {
   private Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private final NetworkParameters params;
   private Bech32UtilGeneric bech32Util;
+  private SegwitTxSigner txSigner;
 
   public TxAggregateService(NetworkParameters params, Bech32UtilGeneric bech32Util) {
     this.params = params;
     this.bech32Util = bech32Util;
+    this.txSigner = new SegwitTxSigner(ForkJoinPool.commonPool());
   }
 
   public Transaction txAggregate(
       List<TransactionOutPoint> spendFromOutpoints,
-      List<HD_Address> spendFromAddresses,
+      List<DerivedKeyCache.DerivedKey> spendFromKeys,
       String toAddress,
-      long feeSatPerByte)
+      long minerFee)
       throws Exception {
 
     long inputsValue = spendFromOutpoints.stream().mapToLong(o -> o.getValue().getValue()).sum();
 
     Transaction tx = new Transaction(params);
-    long minerFee =
-        FeeUtil.getInstance()
-            .estimatedFeeSegwit(spendFromOutpoints.size(), 0, 0, 1, 0, feeSatPerByte);
     long destinationValue = inputsValue - minerFee;
 
     // 1 output
@@ -61,9 +61,7 @@ public class TxAggregateService {
     Map<TransactionInput, ECKey> keysByInput = new HashMap<>();
     for (int i = 0; i < spendFromOutpoints.size(); i++) {
       TransactionOutPoint spendFromOutpoint = spendFromOutpoints.get(i);
-      HD_Address spendFromAddress = spendFromAddresses.get(i);
-      String spendFromAddressBech32 = bech32Util.toBech32(spendFromAddress, params);
-      ECKey spendFromKey = spendFromAddress.getECKey();
+      DerivedKeyCache.DerivedKey spendFromKey = spendFromKeys.get(i);
 
       // final Script segwitPubkeyScript = ScriptBuilder.createP2WPKHOutputScript(spendFromKey);
       new Transaction(params);
@@ -71,15 +69,15 @@ public class TxAggregateService {
           new TransactionInput(
               params, null, new byte[] {}, spendFromOutpoint, spendFromOutpoint.getValue());
       inputs.add(txInput);
-      keysByInput.put(txInput, spendFromKey);
+      keysByInput.put(txInput, spendFromKey.getECKey());
       if (log.isDebugEnabled()) {
         log.debug(
             "Tx in: address="
-                + spendFromAddressBech32
+                + spendFromKey.getBech32Address()
                 + ", utxo="
                 + spendFromOutpoint
                 + ", path="
-                + spendFromAddress.toJSON().get("path")
+                + spendFromKey.getPath()
                 + " ("
                 + spendFromOutpoint.getValue().getValue()
                 + " sats)");
@@ -92,15 +90,9 @@ public class TxAggregateService {
       tx.addInput(ti);
     }
 
-    // sign inputs
-    for (TransactionInput txInput : inputs) {
-      ECKey spendFromKey = keysByInput.get(txInput);
-      TransactionOutPoint txo = txInput.getOutpoint();
-      int inputIndex =
-          TxUtil.getInstance().findInputIndex(tx, txo.getHash().toString(), txo.getIndex());
-      TxUtil.getInstance()
-          .signInputSegwit(tx, inputIndex, spendFromKey, txInput.getValue().getValue(), params);
-    }
+    // sign inputs (inputs are in tx order)
+    List<ECKey> keys = inputs.stream().map(keysByInput::get).collect(Collectors.toList());
+    txSigner.sign(tx, keys);
 
     final String hexTx = new String(Hex.encode(tx.bitcoinSerialize()));
     final String strTxHash = tx.getHashAsString();
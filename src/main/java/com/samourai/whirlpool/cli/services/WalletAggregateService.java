@@ -8,14 +8,33 @@ import com.samourai.wallet.client.Bip84Wallet;
 import com.samourai.wallet.hd.HD_Address;
 import com.samourai.wallet.segwit.bech32.Bech32UtilGeneric;
 import com.samourai.wallet.util.FormatsUtilGeneric;
+import com.samourai.whirlpool.cli.beans.AggregatePlan;
+import com.samourai.whirlpool.cli.beans.WalletSnapshot;
 import com.samourai.whirlpool.cli.config.CliConfig;
+import com.samourai.whirlpool.cli.wallet.AggregatePlanner;
 import com.samourai.whirlpool.cli.wallet.CliWallet;
+import com.samourai.whirlpool.cli.wallet.DerivedKeyCache;
 import com.samourai.whirlpool.client.exception.NotifiableException;
 import com.samourai.whirlpool.client.utils.ClientUtils;
 import com.samourai.whirlpool.client.wallet.pushTx.PushTxService;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.core.Transaction;
 import org.bitcoinj.core.TransactionOutPoint;
@@ -26,8 +45,11 @@ import org.springframework.stereotype.Service;
 @Service
 public class WalletAggregateService {
   private Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
-  private static final int AGGREGATED_UTXOS_PER_TX = 600;
   private static final FormatsUtilGeneric formatUtils = FormatsUtilGeneric.getInstance();
+  private static final int PUSHTX_THREADS = 3;
+  private static final long AWAIT_UTXOS_DELAY = 5000;
+  private static final long AWAIT_UTXOS_TIMEOUT = 120000;
+  private static final int DERIVED_KEYS_MAX_INDEX = 20000;
 
   private SamouraiApi samouraiApi;
   private PushTxService pushTxService;
@@ -35,6 +57,12 @@ public class WalletAggregateService {
   private CliConfig cliConfig;
   private Bech32UtilGeneric bech32Util;
   private TxAggregateService txAggregateService;
+  private WalletSnapshotService walletSnapshotService;
+  private AggregatePlanner aggregatePlanner;
+  private Map<Bip84ApiWallet, DerivedKeyCache> derivedKeyCaches;
+  private ExecutorService pushTxExecutor;
+  private ScheduledExecutorService trackExecutor;
+  private Object interactivePushTxLock;
 
   public WalletAggregateService(
       SamouraiApi samouraiApi,
@@ -42,18 +70,38 @@ public class WalletAggregateService {
       NetworkParameters params,
       CliConfig cliConfig,
       Bech32UtilGeneric bech32Util,
-      TxAggregateService txAggregateService) {
+      TxAggregateService txAggregateService,
+      WalletSnapshotService walletSnapshotService) {
     this.samouraiApi = samouraiApi;
     this.pushTxService = pushTxService;
     this.params = params;
     this.cliConfig = cliConfig;
     this.bech32Util = bech32Util;
     this.txAggregateService = txAggregateService;
+    this.walletSnapshotService = walletSnapshotService;
+    this.aggregatePlanner = new AggregatePlanner();
+    this.derivedKeyCaches = new ConcurrentHashMap<>();
+    this.pushTxExecutor =
+        Executors.newFixedThreadPool(
+            PUSHTX_THREADS,
+            r -> {
+              Thread thread = new Thread(r, "aggregate-pushtx");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.interactivePushTxLock = new Object();
+    this.trackExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "aggregate-track");
+              thread.setDaemon(true);
+              return thread;
+            });
   }
 
   public boolean toWallet(Bip84ApiWallet sourceWallet, Bip84Wallet destinationWallet)
       throws Exception {
-    return doAggregate(sourceWallet, null, destinationWallet);
+    return !waitResult(aggregate(sourceWallet, null, destinationWallet)).isEmpty();
   }
 
   public boolean toAddress(Bip84ApiWallet sourceWallet, String destinationAddress)
@@ -62,80 +110,267 @@ public class WalletAggregateService {
       throw new NotifiableException(
           "aggregate toAddress is disabled on mainnet for security reasons.");
     }
-    return doAggregate(sourceWallet, destinationAddress, null);
+    return !waitResult(aggregate(sourceWallet, destinationAddress, null)).isEmpty();
   }
 
-  private boolean doAggregate(
-      Bip84ApiWallet sourceWallet, String destinationAddress, Bip84Wallet destinationWallet)
-      throws Exception {
-    List<UnspentResponse.UnspentOutput> utxos = sourceWallet.fetchUtxos();
-    if (utxos.isEmpty()) {
-      // maybe you need to declare zpub as bip84 with /multiaddr?bip84=
-      log.info("AggregateWallet result: no utxo to aggregate");
-      return false;
-    }
-    if (log.isDebugEnabled()) {
-      log.debug("Found " + utxos.size() + " utxo to aggregate:");
-      ClientUtils.logUtxos(utxos);
+  /** @return weight of broadcasted txs by hash, empty when nothing to aggregate */
+  private CompletableFuture<Map<String, Integer>> aggregate(
+      Bip84ApiWallet sourceWallet, String destinationAddress, Bip84Wallet destinationWallet) {
+    try {
+      List<UnspentResponse.UnspentOutput> utxos = sourceWallet.fetchUtxos();
+      return aggregate(sourceWallet, utxos, destinationAddress, destinationWallet, new HashMap<>());
+    } catch (Exception e) {
+      CompletableFuture<Map<String, Integer>> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
     }
+  }
 
-    boolean success = false;
-    int round = 0;
-    int offset = 0;
-    while (offset < utxos.size()) {
-      List<UnspentResponse.UnspentOutput> subsetUtxos = new ArrayList<>();
-      offset = AGGREGATED_UTXOS_PER_TX * round;
-      for (int i = offset; i < (offset + AGGREGATED_UTXOS_PER_TX) && i < utxos.size(); i++) {
-        subsetUtxos.add(utxos.get(i));
+  /** @param unconfirmedParents weight of unconfirmed txs (by hash) which created some utxos */
+  private CompletableFuture<Map<String, Integer>> aggregate(
+      Bip84ApiWallet sourceWallet,
+      List<UnspentResponse.UnspentOutput> utxos,
+      String destinationAddress,
+      Bip84Wallet destinationWallet,
+      Map<String, Integer> unconfirmedParents) {
+    try {
+      AggregatePlan plan = planAggregate(utxos, unconfirmedParents);
+      if (plan == null) {
+        return CompletableFuture.completedFuture(new LinkedHashMap<>());
       }
-      if (!subsetUtxos.isEmpty()) {
+
+      // sign every tx upfront
+      List<Transaction> txs = new ArrayList<>();
+      List<Integer> weights = new ArrayList<>();
+      int round = 0;
+      for (AggregatePlan.Batch batch : plan.getBatches()) {
         String toAddress = destinationAddress;
         if (toAddress == null) {
-          toAddress = bech32Util.toBech32(destinationWallet.getNextAddress(), params);
+          synchronized (destinationWallet) {
+            toAddress = bech32Util.toBech32(destinationWallet.getNextAddress(), params);
+          }
         }
+        log.info("Aggregating " + batch.getUtxos().size() + " utxos (pass #" + round + ")");
+        txs.add(txAggregate(sourceWallet, batch, toAddress));
+        weights.add(batch.getWeight());
+        round++;
+      }
 
-        log.info("Aggregating " + subsetUtxos.size() + " utxos (pass #" + round + ")");
-        txAggregate(sourceWallet, subsetUtxos, toAddress);
-        success = true;
+      // then broadcast them concurrently, and wait for each of them even when one fails
+      List<CompletableFuture<String>> pushTxs =
+          txs.stream().map(tx -> pushTx(tx)).collect(Collectors.toList());
+      CompletableFuture<?>[] pushTxsDone =
+          pushTxs.stream()
+              .map(pushTx -> pushTx.handle((hash, e) -> hash))
+              .toArray(size -> new CompletableFuture<?>[size]);
+      return CompletableFuture.allOf(pushTxsDone).thenApply(v -> collectTxs(pushTxs, weights));
+    } catch (Exception e) {
+      CompletableFuture<Map<String, Integer>> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+  }
 
-        ClientUtils.sleepRefreshUtxos(cliConfig.getServer().getParams());
+  /** @return weight of broadcasted txs by hash, or first failure once broadcasted txs are logged */
+  private Map<String, Integer> collectTxs(
+      List<CompletableFuture<String>> pushTxs, List<Integer> weights) {
+    Map<String, Integer> txs = new LinkedHashMap<>();
+    Throwable failure = null;
+    for (int i = 0; i < pushTxs.size(); i++) {
+      try {
+        txs.put(pushTxs.get(i).join(), weights.get(i));
+      } catch (CompletionException e) {
+        if (failure == null) {
+          failure = e.getCause() != null ? e.getCause() : e;
+        }
       }
-      round++;
     }
-    return success;
+    if (failure != null) {
+      logBroadcastedTxs(txs.keySet());
+      throw new CompletionException(failure);
+    }
+    return txs;
   }
 
-  private void txAggregate(
-      Bip84ApiWallet sourceWallet,
-      List<UnspentResponse.UnspentOutput> postmixUtxos,
-      String toAddress)
+  private void logBroadcastedTxs(Collection<String> txHashes) {
+    if (!txHashes.isEmpty()) {
+      log.error("Aggregate failed, but these txs were already broadcasted: " + txHashes);
+    }
+  }
+
+  /** @return null when no utxo */
+  private AggregatePlan planAggregate(
+      List<UnspentResponse.UnspentOutput> utxos, Map<String, Integer> unconfirmedParents)
+      throws Exception {
+    if (utxos.isEmpty()) {
+      // maybe you need to declare zpub as bip84 with /multiaddr?bip84=
+      log.info("AggregateWallet result: no utxo to aggregate");
+      return null;
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Found " + utxos.size() + " utxo to aggregate:");
+      ClientUtils.logUtxos(utxos);
+    }
+
+    int feeSatPerByte = samouraiApi.fetchFees().get(SamouraiFeeTarget.BLOCKS_2);
+    AggregatePlan plan = aggregatePlanner.plan(utxos, feeSatPerByte, unconfirmedParents);
+    log.info(plan.toReport());
+    return plan;
+  }
+
+  private Transaction txAggregate(
+      Bip84ApiWallet sourceWallet, AggregatePlan.Batch batch, String toAddress)
       throws Exception {
     List<TransactionOutPoint> spendFromOutPoints = new ArrayList<>();
-    List<HD_Address> spendFromAddresses = new ArrayList<>();
+    List<DerivedKeyCache.DerivedKey> spendFromKeys = new ArrayList<>();
 
     // spend
-    for (UnspentResponse.UnspentOutput utxo : postmixUtxos) {
+    DerivedKeyCache derivedKeyCache =
+        derivedKeyCaches.computeIfAbsent(
+            sourceWallet, wallet -> new DerivedKeyCache(DERIVED_KEYS_MAX_INDEX));
+    for (UnspentResponse.UnspentOutput utxo : batch.getUtxos()) {
       spendFromOutPoints.add(utxo.computeOutpoint(params));
-      spendFromAddresses.add(sourceWallet.getAddressAt(utxo));
+      spendFromKeys.add(getDerivedKey(sourceWallet, derivedKeyCache, utxo));
     }
 
-    int feeSatPerByte = samouraiApi.fetchFees().get(SamouraiFeeTarget.BLOCKS_2);
-
     // tx
     Transaction txAggregate =
         txAggregateService.txAggregate(
-            spendFromOutPoints, spendFromAddresses, toAddress, feeSatPerByte);
+            spendFromOutPoints, spendFromKeys, toAddress, batch.getFee());
 
     log.info("txAggregate:");
     log.info(txAggregate.toString());
+    return txAggregate;
+  }
+
+  private DerivedKeyCache.DerivedKey getDerivedKey(
+      Bip84ApiWallet sourceWallet,
+      DerivedKeyCache derivedKeyCache,
+      UnspentResponse.UnspentOutput utxo)
+      throws Exception {
+    // path: M/chain/index
+    String path = utxo.xpub != null ? utxo.xpub.path : null;
+    String[] pathItems = path != null ? path.split("/") : new String[0];
+    int chain = -1;
+    int index = -1;
+    if (pathItems.length == 3) {
+      try {
+        chain = Integer.parseInt(pathItems[1]);
+        index = Integer.parseInt(pathItems[2]);
+      } catch (NumberFormatException e) {
+        chain = -1;
+      }
+    }
+    DerivedKeyCache.DerivedKey derivedKey = derivedKeyCache.get(chain, index);
+    if (derivedKey == null) {
+      HD_Address address = sourceWallet.getAddressAt(utxo);
+      derivedKey =
+          new DerivedKeyCache.DerivedKey(
+              address, address.getECKey(), bech32Util.toBech32(address, params), path);
+      derivedKeyCache.put(chain, index, derivedKey);
+    }
+    return derivedKey;
+  }
 
-    // broadcast
-    log.info(" • Broadcasting TxAggregate...");
-    String txHex = ClientUtils.getTxHex(txAggregate);
-    pushTxService.pushTx(txHex);
+  /** Release derived keys of closed wallet (references only, see DerivedKeyCache.clear()). */
+  public void clearDerivedKeys() {
+    derivedKeyCaches.values().forEach(derivedKeyCache -> derivedKeyCache.clear());
+    derivedKeyCaches.clear();
+  }
+
+  private CompletableFuture<String> pushTx(Transaction tx) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          log.info(" • Broadcasting TxAggregate " + tx.getHashAsString() + "...");
+          try {
+            String txHex = ClientUtils.getTxHex(tx);
+            if (cliConfig.isPushtxInteractive()) {
+              // one console prompt at a time
+              synchronized (interactivePushTxLock) {
+                pushTxService.pushTx(txHex);
+              }
+            } else {
+              pushTxService.pushTx(txHex);
+            }
+          } catch (Exception e) {
+            throw new CompletionException(e);
+          }
+          return tx.getHashAsString();
+        },
+        pushTxExecutor);
+  }
+
+  /** Completes when backend lists outputs of these txs in wallet utxos (or on timeout). */
+  private CompletableFuture<List<UnspentResponse.UnspentOutput>> awaitUtxos(
+      Bip84ApiWallet wallet, Collection<String> txHashes) {
+    CompletableFuture<List<UnspentResponse.UnspentOutput>> future = new CompletableFuture<>();
+    long timeout = System.currentTimeMillis() + AWAIT_UTXOS_TIMEOUT;
+    Runnable poll =
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              List<UnspentResponse.UnspentOutput> utxos = wallet.fetchUtxos();
+              Set<String> utxoHashes =
+                  utxos.stream().map(utxo -> utxo.tx_hash).collect(Collectors.toSet());
+              if (utxoHashes.containsAll(txHashes)) {
+                future.complete(utxos);
+              } else if (System.currentTimeMillis() > timeout) {
+                log.warn("Aggregate txs not seen by backend yet, going on anyway");
+                future.complete(utxos);
+              } else {
+                trackExecutor.schedule(this, AWAIT_UTXOS_DELAY, TimeUnit.MILLISECONDS);
+              }
+            } catch (Exception e) {
+              future.completeExceptionally(e);
+            }
+          }
+        };
+    if (txHashes.isEmpty()) {
+      trackExecutor.execute(poll);
+    } else {
+      trackExecutor.schedule(poll, AWAIT_UTXOS_DELAY, TimeUnit.MILLISECONDS);
+    }
+    return future;
+  }
+
+  private <T> T waitResult(CompletableFuture<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof CompletionException && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw e;
+    }
+  }
+
+  /** Log aggregate plans of each account, without broadcasting anything. */
+  public void consolidateWalletDryRun(CliWallet cliWallet) throws Exception {
+    WalletSnapshot snapshot = walletSnapshotService.fetch(cliWallet);
+
+    log.info(" • Dry-run: postmix -> deposit...");
+    planAggregate(snapshot.getPostmixUtxos(), new HashMap<>());
+
+    log.info(" • Dry-run: premix -> deposit...");
+    planAggregate(snapshot.getPremixUtxos(), new HashMap<>());
+
+    // deposit utxos before receiving postmix & premix funds
+    log.info(" • Dry-run: deposit...");
+    planAggregate(snapshot.getDepositUtxos(), new HashMap<>());
   }
 
   public boolean consolidateWallet(CliWallet cliWallet) throws Exception {
+    return consolidateWallet(cliWallet, walletSnapshotService.fetch(cliWallet));
+  }
+
+  /** @param snapshot recent utxos of each account, to aggregate without fetching them again */
+  public boolean consolidateWallet(CliWallet cliWallet, WalletSnapshot snapshot)
+      throws Exception {
     if (!formatUtils.isTestNet(cliConfig.getServer().getParams())) {
       log.warn("You should NOT consolidateWallet on mainnet for privacy reasons!");
     }
@@ -144,18 +379,56 @@ public class WalletAggregateService {
     Bip84ApiWallet premixWallet = cliWallet.getWalletPremix();
     Bip84ApiWallet postmixWallet = cliWallet.getWalletPostmix();
 
-    log.info(" • Consolidating postmix -> deposit...");
-    toWallet(postmixWallet, depositWallet);
-
-    log.info(" • Consolidating premix -> deposit...");
-    toWallet(premixWallet, depositWallet);
+    // postmix & premix don't depend on each other
+    log.info(" • Consolidating postmix -> deposit, premix -> deposit...");
+    CompletableFuture<Map<String, Integer>> postmixTxs =
+        CompletableFuture.supplyAsync(
+                () ->
+                    aggregate(
+                        postmixWallet,
+                        snapshot.getPostmixUtxos(),
+                        null,
+                        depositWallet,
+                        new HashMap<>()),
+                pushTxExecutor)
+            .thenCompose(future -> future);
+    CompletableFuture<Map<String, Integer>> premixTxs =
+        aggregate(premixWallet, snapshot.getPremixUtxos(), null, depositWallet, new HashMap<>());
+    Map<String, Integer> txs = new LinkedHashMap<>();
+    Exception failure = null;
+    for (CompletableFuture<Map<String, Integer>> accountTxs :
+        Arrays.asList(postmixTxs, premixTxs)) {
+      try {
+        txs.putAll(waitResult(accountTxs));
+      } catch (Exception e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (failure != null) {
+      logBroadcastedTxs(txs.keySet());
+      throw failure;
+    }
 
-    if (depositWallet.fetchUtxos().size() < 2) {
+    // deposit consolidation spends outputs of previous txs, before their confirmation
+    List<UnspentResponse.UnspentOutput> depositUtxos =
+        txs.isEmpty()
+            ? snapshot.getDepositUtxos()
+            : waitResult(awaitUtxos(depositWallet, txs.keySet()));
+    if (depositUtxos.size() < 2) {
       log.info(" • Consolidating deposit... nothing to aggregate.");
       return false;
     }
     log.info(" • Consolidating deposit...");
-    boolean success = toWallet(depositWallet, depositWallet);
-    return success;
+    Collection<String> depositTxHashes =
+        waitResult(aggregate(depositWallet, depositUtxos, null, depositWallet, txs)).keySet();
+    if (depositTxHashes.isEmpty()) {
+      return false;
+    }
+
+    // let backend see consolidated utxos before next wallet operations
+    waitResult(awaitUtxos(depositWallet, depositTxHashes));
+    return true;
   }
 }
@@ -0,0 +1,88 @@
+package com.samourai.whirlpool.cli.services;
+
+import com.samourai.wallet.api.backend.beans.UnspentResponse;
+import com.samourai.wallet.client.Bip84ApiWallet;
+import com.samourai.whirlpool.cli.beans.WalletSnapshot;
+import com.samourai.whirlpool.cli.wallet.CliWallet;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Fetches utxos of deposit, premix and postmix accounts concurrently, so that balances and utxos
+ * cost one round trip and stay consistent with each other.
+ */
+@Service
+public class WalletSnapshotService {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int NB_ACCOUNTS = 3;
+
+  private ExecutorService executor;
+
+  public WalletSnapshotService() {
+    this.executor =
+        Executors.newFixedThreadPool(
+            NB_ACCOUNTS,
+            r -> {
+              Thread thread = new Thread(r, "wallet-snapshot");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  public WalletSnapshot fetch(CliWallet cliWallet) throws Exception {
+    long now = System.currentTimeMillis();
+    CompletableFuture<List<UnspentResponse.UnspentOutput>> depositUtxos =
+        fetchUtxos(cliWallet.getWalletDeposit());
+    CompletableFuture<List<UnspentResponse.UnspentOutput>> premixUtxos =
+        fetchUtxos(cliWallet.getWalletPremix());
+    CompletableFuture<List<UnspentResponse.UnspentOutput>> postmixUtxos =
+        fetchUtxos(cliWallet.getWalletPostmix());
+    try {
+      WalletSnapshot snapshot =
+          new WalletSnapshot(depositUtxos.get(), premixUtxos.get(), postmixUtxos.get(), now);
+      if (log.isDebugEnabled()) {
+        log.debug(
+            "WalletSnapshot fetched in "
+                + (System.currentTimeMillis() - now)
+                + "ms: "
+                + snapshot.getDepositUtxos().size()
+                + " deposit, "
+                + snapshot.getPremixUtxos().size()
+                + " premix, "
+                + snapshot.getPostmixUtxos().size()
+                + " postmix utxos");
+      }
+      return snapshot;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof CompletionException && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw e;
+    }
+  }
+
+  private CompletableFuture<List<UnspentResponse.UnspentOutput>> fetchUtxos(
+      Bip84ApiWallet wallet) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return wallet.fetchUtxos();
+          } catch (Exception e) {
+            throw new CompletionException(e);
+          }
+        },
+        executor);
+  }
+}
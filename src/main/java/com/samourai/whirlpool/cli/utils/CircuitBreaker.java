@@ -0,0 +1,185 @@
+package com.samourai.whirlpool.cli.utils;
+
+import com.samourai.whirlpool.cli.exception.CircuitBreakerOpenException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fails fast when a remote host keeps failing. CLOSED: calls go through, consecutive failures are
+ * counted. OPEN: calls are rejected until openDelay elapsed. HALF_OPEN: a single probe call goes
+ * through, closing the circuit on success or opening it again on failure.
+ */
+public class CircuitBreaker {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final double OPEN_DELAY_JITTER = 0.2;
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final String name;
+  private final int failureThreshold;
+  private final long openDelay;
+
+  private State state;
+  private int nbFailures; // consecutive
+  private long openUntil;
+  private boolean probing;
+
+  private long nbTrips;
+  private long nbRejected;
+
+  public CircuitBreaker(String name, int failureThreshold, long openDelay) {
+    this.name = name;
+    this.failureThreshold = failureThreshold;
+    this.openDelay = openDelay;
+    this.state = State.CLOSED;
+    this.nbFailures = 0;
+    this.openUntil = 0;
+    this.probing = false;
+    this.nbTrips = 0;
+    this.nbRejected = 0;
+  }
+
+  /** Run call, counting any exception as a failure. */
+  public <T> T execute(Callable<T> call) throws Exception {
+    return execute(call, e -> true);
+  }
+
+  public <T> T execute(Callable<T> call, Predicate<Throwable> isFailure) throws Exception {
+    checkAllowed();
+    try {
+      T result = call.call();
+      onSuccess();
+      return result;
+    } catch (Exception e) {
+      onResult(e, isFailure);
+      throw e;
+    }
+  }
+
+  public <T> CompletableFuture<T> executeAsync(
+      Supplier<CompletableFuture<T>> call, Predicate<Throwable> isFailure) {
+    try {
+      checkAllowed();
+    } catch (CircuitBreakerOpenException e) {
+      CompletableFuture<T> rejected = new CompletableFuture<>();
+      rejected.completeExceptionally(e);
+      return rejected;
+    }
+    CompletableFuture<T> future;
+    try {
+      future = call.get();
+    } catch (RuntimeException e) {
+      onResult(e, isFailure);
+      throw e;
+    }
+    return future.whenComplete(
+        (result, e) -> {
+          if (e == null) {
+            onSuccess();
+          } else {
+            onResult(e, isFailure);
+          }
+        });
+  }
+
+  private void onResult(Throwable e, Predicate<Throwable> isFailure) {
+    if (isFailure.test(e)) {
+      onFailure();
+    } else {
+      // host answered
+      onSuccess();
+    }
+  }
+
+  public synchronized void checkAllowed() throws CircuitBreakerOpenException {
+    if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+      state = State.HALF_OPEN;
+      probing = false;
+    }
+    if (state == State.CLOSED) {
+      return;
+    }
+    if (state == State.HALF_OPEN && !probing) {
+      // let one probe call through
+      probing = true;
+      return;
+    }
+    nbRejected++;
+    throw new CircuitBreakerOpenException(name);
+  }
+
+  public synchronized void onSuccess() {
+    if (state != State.CLOSED) {
+      log.info("Circuit closed for " + name);
+    }
+    state = State.CLOSED;
+    nbFailures = 0;
+    probing = false;
+  }
+
+  public synchronized void onFailure() {
+    nbFailures++;
+    if (state == State.HALF_OPEN || nbFailures >= failureThreshold) {
+      // jitter spreads recovery probes of concurrent clients
+      long jitter =
+          (long) (openDelay * OPEN_DELAY_JITTER * ThreadLocalRandom.current().nextDouble());
+      openUntil = System.currentTimeMillis() + openDelay + jitter;
+      if (state != State.OPEN) {
+        nbTrips++;
+        log.warn(
+            "Circuit opened for "
+                + name
+                + " after "
+                + nbFailures
+                + " failure(s), retrying in "
+                + (openDelay + jitter) / 1000
+                + "s");
+      }
+      state = State.OPEN;
+      probing = false;
+    }
+  }
+
+  /** Network failures (connexion refused, timeout...) as opposed to errors returned by host. */
+  public static boolean isNetworkFailure(Throwable e) {
+    while (e != null) {
+      if (e instanceof IOException || e instanceof TimeoutException) {
+        return true;
+      }
+      e = e.getCause();
+    }
+    return false;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  public synchronized int getNbFailures() {
+    return nbFailures;
+  }
+
+  public synchronized long getNbTrips() {
+    return nbTrips;
+  }
+
+  public synchronized long getNbRejected() {
+    return nbRejected;
+  }
+}
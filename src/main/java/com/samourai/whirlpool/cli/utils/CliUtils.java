@@ -10,6 +10,7 @@ import java.io.Console;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jetty.client.HttpClient;
@@ -147,14 +148,35 @@ public class CliUtils {
       CliTorClientService torClientService,
       Optional<CliProxy> cliProxyDefault)
       throws NotifiableException {
-    // use torConnexion when available, otherwise cliProxyDefault
-    Optional<JavaTorConnexion> torConnexion = torClientService.getTorConnexion(isRegisterOutput);
     Optional<CliProxy> cliProxyOptional =
-        torConnexion.isPresent() ? Optional.of(torConnexion.get().getTorProxy()) : cliProxyDefault;
+        computeProxy(isRegisterOutput, torClientService, cliProxyDefault);
     return computeHttpClient(cliProxyOptional);
   }
 
-  protected static HttpClient computeHttpClient(Optional<CliProxy> cliProxyOptional) {
+  public static Optional<CliProxy> computeProxy(
+      boolean isRegisterOutput,
+      CliTorClientService torClientService,
+      Optional<CliProxy> cliProxyDefault)
+      throws NotifiableException {
+    // use torConnexion when available, otherwise cliProxyDefault
+    Optional<JavaTorConnexion> torConnexion = torClientService.getTorConnexion(isRegisterOutput);
+    return torConnexion.isPresent()
+        ? Optional.of(torConnexion.get().getTorProxy())
+        : cliProxyDefault;
+  }
+
+  // non-blocking version of computeProxy(), completed when TOR is ready, failed if not started
+  public static CompletableFuture<Optional<CliProxy>> computeProxyAsync(
+      boolean isRegisterOutput,
+      CliTorClientService torClientService,
+      Optional<CliProxy> cliProxyDefault) {
+    Optional<JavaTorConnexion> torConnexion = torClientService.getTorConnexion(isRegisterOutput);
+    return torConnexion.isPresent()
+        ? torConnexion.get().getReadyFuture().thenApply(torProxy -> Optional.of(torProxy))
+        : CompletableFuture.completedFuture(cliProxyDefault);
+  }
+
+  public static HttpClient computeHttpClient(Optional<CliProxy> cliProxyOptional) {
     // we use jetty for proxy SOCKS support
     HttpClient jettyHttpClient = new HttpClient(new SslContextFactory());
     // jettyHttpClient.setSocketAddressResolver(new MySocketAddressResolver());
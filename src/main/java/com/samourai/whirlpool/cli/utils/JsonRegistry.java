@@ -0,0 +1,42 @@
+package com.samourai.whirlpool.cli.utils;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared ObjectMapper with ObjectReader/ObjectWriter cached per type, so (de)serializers are
+ * resolved once instead of on each call. Afterburner optionally replaces reflection with generated
+ * bytecode accessors.
+ */
+public class JsonRegistry {
+  private final ObjectMapper objectMapper;
+  private final Map<Class<?>, ObjectReader> readers;
+  private final Map<Class<?>, ObjectWriter> writers;
+
+  public JsonRegistry(boolean afterburner) {
+    this.objectMapper = new ObjectMapper();
+    objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    if (afterburner) {
+      objectMapper.registerModule(new AfterburnerModule());
+    }
+    this.readers = new ConcurrentHashMap<>();
+    this.writers = new ConcurrentHashMap<>();
+  }
+
+  public ObjectReader getReader(Class<?> type) {
+    return readers.computeIfAbsent(type, t -> objectMapper.readerFor(t));
+  }
+
+  public ObjectWriter getWriter(Class<?> type) {
+    return writers.computeIfAbsent(type, t -> objectMapper.writerFor(t));
+  }
+
+  public ObjectMapper getObjectMapper() {
+    return objectMapper;
+  }
+}
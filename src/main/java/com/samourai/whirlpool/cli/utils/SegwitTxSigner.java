@@ -0,0 +1,130 @@
+package com.samourai.whirlpool.cli.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.core.TransactionWitness;
+import org.bitcoinj.crypto.TransactionSignature;
+
+/**
+ * Signs P2WPKH inputs (SIGHASH_ALL) in parallel. BIP143 hashPrevouts, hashSequence and hashOutputs
+ * are the same for every input: they are computed once instead of once per input. Witnesses are set
+ * in inputs order once all signatures are computed.
+ */
+public class SegwitTxSigner {
+  private static final int PARALLEL_MIN_INPUTS = 8;
+  private static final int SIGHASH_ALL = 1;
+  private static final int PREIMAGE_LENGTH = 4 + 32 + 32 + 36 + 26 + 8 + 4 + 32 + 4 + 4;
+
+  private ForkJoinPool pool;
+
+  public SegwitTxSigner(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /** @param keys key of each input, in inputs order */
+  public void sign(Transaction tx, List<ECKey> keys) throws Exception {
+    int nbInputs = tx.getInputs().size();
+    if (keys.size() != nbInputs) {
+      throw new IllegalArgumentException("Expected " + nbInputs + " keys, got " + keys.size());
+    }
+
+    // read tx once, signing tasks only use these immutable values
+    SighashInputs sighashInputs = new SighashInputs(tx);
+    TransactionWitness[] witnesses = new TransactionWitness[nbInputs];
+    if (nbInputs < PARALLEL_MIN_INPUTS) {
+      for (int i = 0; i < nbInputs; i++) {
+        witnesses[i] = signInput(sighashInputs, i, keys.get(i));
+      }
+    } else {
+      pool.submit(
+              () ->
+                  IntStream.range(0, nbInputs)
+                      .parallel()
+                      .forEach(i -> witnesses[i] = signInput(sighashInputs, i, keys.get(i))))
+          .get();
+    }
+
+    for (int i = 0; i < nbInputs; i++) {
+      tx.setWitness(i, witnesses[i]);
+    }
+  }
+
+  private TransactionWitness signInput(SighashInputs sighashInputs, int inputIndex, ECKey key) {
+    Sha256Hash sighash = sighashInputs.computeSighash(inputIndex, key.getPubKeyHash());
+    TransactionSignature signature =
+        new TransactionSignature(key.sign(sighash), Transaction.SigHash.ALL, false);
+
+    TransactionWitness witness = new TransactionWitness(2);
+    witness.setPush(0, signature.encodeToBitcoin());
+    witness.setPush(1, key.getPubKey());
+    return witness;
+  }
+
+  private static class SighashInputs {
+    private long version;
+    private long lockTime;
+    private byte[] hashPrevouts;
+    private byte[] hashSequence;
+    private byte[] hashOutputs;
+    private byte[][] outpoints;
+    private long[] values;
+    private long[] sequences;
+
+    SighashInputs(Transaction tx) {
+      List<TransactionInput> inputs = tx.getInputs();
+      int nbInputs = inputs.size();
+      this.version = tx.getVersion();
+      this.lockTime = tx.getLockTime();
+      this.outpoints = new byte[nbInputs][];
+      this.values = new long[nbInputs];
+      this.sequences = new long[nbInputs];
+
+      ByteArrayOutputStream prevouts = new ByteArrayOutputStream(nbInputs * 36);
+      ByteBuffer sequenceBuffer = ByteBuffer.allocate(nbInputs * 4).order(ByteOrder.LITTLE_ENDIAN);
+      for (int i = 0; i < nbInputs; i++) {
+        TransactionInput input = inputs.get(i);
+        outpoints[i] = input.getOutpoint().bitcoinSerialize();
+        values[i] = input.getValue().getValue();
+        sequences[i] = input.getSequenceNumber();
+        prevouts.write(outpoints[i], 0, outpoints[i].length);
+        sequenceBuffer.putInt((int) sequences[i]);
+      }
+      this.hashPrevouts = Sha256Hash.hashTwice(prevouts.toByteArray());
+      this.hashSequence = Sha256Hash.hashTwice(sequenceBuffer.array());
+
+      ByteArrayOutputStream outputs = new ByteArrayOutputStream();
+      for (TransactionOutput output : tx.getOutputs()) {
+        byte[] outputBytes = output.bitcoinSerialize();
+        outputs.write(outputBytes, 0, outputBytes.length);
+      }
+      this.hashOutputs = Sha256Hash.hashTwice(outputs.toByteArray());
+    }
+
+    // BIP143 signature hash, with P2WPKH scriptCode
+    Sha256Hash computeSighash(int inputIndex, byte[] pubKeyHash) {
+      ByteBuffer preimage = ByteBuffer.allocate(PREIMAGE_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+      preimage.putInt((int) version);
+      preimage.put(hashPrevouts);
+      preimage.put(hashSequence);
+      preimage.put(outpoints[inputIndex]);
+      preimage.put(new byte[] {0x19, 0x76, (byte) 0xa9, 0x14});
+      preimage.put(pubKeyHash);
+      preimage.put(new byte[] {(byte) 0x88, (byte) 0xac});
+      preimage.putLong(values[inputIndex]);
+      preimage.putInt((int) sequences[inputIndex]);
+      preimage.put(hashOutputs);
+      preimage.putInt((int) lockTime);
+      preimage.putInt(SIGHASH_ALL);
+      return Sha256Hash.twiceOf(preimage.array());
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.samourai.whirlpool.cli.wallet;
+
+import com.samourai.wallet.api.backend.beans.UnspentResponse;
+import com.samourai.whirlpool.cli.beans.AggregatePlan;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Packs P2WPKH utxos into aggregate txs (N inputs, 1 output) under the standard weight limit.
+ * Utxos worth less than the fee to spend them are left out. At a given fee rate, total fees only
+ * depend on the number of txs: batches are filled up, largest utxos first so that most value is
+ * moved by first txs.
+ *
+ * <p>Outputs of aggregate txs may be aggregated again before confirmation (deposit stage of
+ * consolidateWallet). Batches are limited to half of the mempool ancestor limit, and a batch with
+ * its unconfirmed parents stays under this limit.
+ */
+public class AggregatePlanner {
+  // weight units: non-witness bytes count 4, witness bytes count 1
+  private static final int TX_OVERHEAD_WEIGHT = 4 * (4 + 1 + 1 + 4) + 2; // + segwit marker & flag
+  private static final int INPUT_WEIGHT = 4 * (32 + 4 + 1 + 4) + (1 + 1 + 72 + 1 + 33);
+  private static final int OUTPUT_WEIGHT = 4 * (8 + 1 + 22);
+  private static final int MAX_STANDARD_TX_WEIGHT = 400000;
+  // mempool limits for a tx with its unconfirmed ancestors: 101kvB, 25 txs
+  protected static final int MAX_ANCESTORS_WEIGHT = 4 * 101000;
+  private static final int MAX_UNCONFIRMED_PARENTS = 24;
+  private static final long DUST_LIMIT = 294; // P2WPKH output
+
+  private int maxTxWeight;
+
+  public AggregatePlanner() {
+    // a child of a full batch still fits ancestor limit
+    this(Math.min(MAX_STANDARD_TX_WEIGHT, MAX_ANCESTORS_WEIGHT / 2));
+  }
+
+  public AggregatePlanner(int maxTxWeight) {
+    this.maxTxWeight = maxTxWeight;
+  }
+
+  public AggregatePlan plan(List<UnspentResponse.UnspentOutput> utxos, long feeSatPerByte) {
+    return plan(utxos, feeSatPerByte, new HashMap<>());
+  }
+
+  /** @param unconfirmedParents weight of unconfirmed txs (by hash) which created some utxos */
+  public AggregatePlan plan(
+      List<UnspentResponse.UnspentOutput> utxos,
+      long feeSatPerByte,
+      Map<String, Integer> unconfirmedParents) {
+    // leave out utxos which cost more to spend than their value
+    long inputFee = computeFee(INPUT_WEIGHT, feeSatPerByte);
+    List<UnspentResponse.UnspentOutput> spendable = new ArrayList<>();
+    List<UnspentResponse.UnspentOutput> dust = new ArrayList<>();
+    for (UnspentResponse.UnspentOutput utxo : utxos) {
+      if (utxo.value > inputFee) {
+        spendable.add(utxo);
+      } else {
+        dust.add(utxo);
+      }
+    }
+    spendable.sort(
+        Comparator.comparingLong((UnspentResponse.UnspentOutput utxo) -> utxo.value).reversed());
+
+    int maxInputs = computeMaxInputs();
+    List<AggregatePlan.Batch> batches = new ArrayList<>();
+    List<UnspentResponse.UnspentOutput> remaining = spendable;
+    while (!remaining.isEmpty()) {
+      // fill batch with utxos which fit, others go to next batches
+      List<UnspentResponse.UnspentOutput> batchUtxos = new ArrayList<>();
+      List<UnspentResponse.UnspentOutput> next = new ArrayList<>();
+      Set<String> parents = new HashSet<>();
+      int parentsWeight = 0;
+      for (UnspentResponse.UnspentOutput utxo : remaining) {
+        Integer parentWeight = unconfirmedParents.get(utxo.tx_hash);
+        boolean newParent = parentWeight != null && !parents.contains(utxo.tx_hash);
+        int ancestorsWeight = parentsWeight + (newParent ? parentWeight : 0);
+        boolean fits =
+            batchUtxos.isEmpty()
+                || (batchUtxos.size() < maxInputs
+                    && parents.size() + (newParent ? 1 : 0) <= MAX_UNCONFIRMED_PARENTS
+                    && ancestorsWeight + computeWeight(batchUtxos.size() + 1)
+                        <= MAX_ANCESTORS_WEIGHT);
+        if (!fits) {
+          next.add(utxo);
+          continue;
+        }
+        batchUtxos.add(utxo);
+        if (newParent) {
+          parents.add(utxo.tx_hash);
+          parentsWeight = ancestorsWeight;
+        }
+      }
+
+      int weight = computeWeight(batchUtxos.size());
+      AggregatePlan.Batch batch =
+          new AggregatePlan.Batch(batchUtxos, weight, computeFee(weight, feeSatPerByte));
+      if (batch.getDestinationValue() < DUST_LIMIT) {
+        // output would be dust
+        dust.addAll(batchUtxos);
+      } else {
+        batches.add(batch);
+      }
+      remaining = next;
+    }
+    return new AggregatePlan(feeSatPerByte, batches, dust);
+  }
+
+  protected int computeMaxInputs() {
+    int maxInputs = (maxTxWeight - 1 - computeWeight(0)) / INPUT_WEIGHT;
+    while (maxInputs > 1 && computeWeight(maxInputs) >= maxTxWeight) {
+      maxInputs--; // larger varint for inputs count
+    }
+    return Math.max(1, maxInputs);
+  }
+
+  protected static int computeWeight(int nbInputs) {
+    int inputsCountWeight = 4 * (computeVarIntSize(nbInputs) - 1);
+    return TX_OVERHEAD_WEIGHT + inputsCountWeight + nbInputs * INPUT_WEIGHT + OUTPUT_WEIGHT;
+  }
+
+  private static int computeVarIntSize(long value) {
+    if (value < 0xfd) {
+      return 1;
+    }
+    if (value <= 0xffff) {
+      return 3;
+    }
+    return 5;
+  }
+
+  private static long computeFee(int weight, long feeSatPerByte) {
+    long vsize = (weight + 3) / 4;
+    return vsize * feeSatPerByte;
+  }
+}
@@ -1,12 +1,14 @@
 package com.samourai.whirlpool.cli.wallet;
 
 import com.samourai.wallet.client.Bip84ApiWallet;
+import com.samourai.whirlpool.cli.beans.WalletSnapshot;
 import com.samourai.whirlpool.cli.config.CliConfig;
 import com.samourai.whirlpool.cli.run.CliStatusOrchestrator;
 import com.samourai.whirlpool.cli.services.CliConfigService;
 import com.samourai.whirlpool.cli.services.CliTorClientService;
 import com.samourai.whirlpool.cli.services.CliWalletService;
 import com.samourai.whirlpool.cli.services.WalletAggregateService;
+import com.samourai.whirlpool.cli.services.WalletSnapshotService;
 import com.samourai.whirlpool.cli.utils.CliUtils;
 import com.samourai.whirlpool.client.WhirlpoolClient;
 import com.samourai.whirlpool.client.exception.EmptyWalletException;
@@ -25,6 +27,7 @@ public class CliWallet extends WhirlpoolWallet {
   private CliConfig cliConfig;
   private CliConfigService cliConfigService;
   private WalletAggregateService walletAggregateService;
+  private WalletSnapshotService walletSnapshotService;
   private CliStatusOrchestrator cliStatusOrchestrator;
   private CliTorClientService cliTorClientService;
 
@@ -33,12 +36,14 @@ public class CliWallet extends WhirlpoolWallet {
       CliConfig cliConfig,
       CliConfigService cliConfigService,
       WalletAggregateService walletAggregateService,
+      WalletSnapshotService walletSnapshotService,
       CliTorClientService cliTorClientService,
       CliWalletService cliWalletService) {
     super(whirlpoolWallet);
     this.cliConfig = cliConfig;
     this.cliConfigService = cliConfigService;
     this.walletAggregateService = walletAggregateService;
+    this.walletSnapshotService = walletSnapshotService;
     this.cliTorClientService = cliTorClientService;
 
     // log status
@@ -75,7 +80,7 @@ public class CliWallet extends WhirlpoolWallet {
   public void onMixSuccess(MixSuccess mixSuccess, WhirlpoolUtxo whirlpoolUtxo) {
     super.onMixSuccess(mixSuccess, whirlpoolUtxo);
 
-    // change TOR identity
+    // change TOR identity of connexions not used by in-flight mixs (leases are renewed on release)
     cliTorClientService.changeIdentity();
   }
 
@@ -97,19 +102,14 @@ public class CliWallet extends WhirlpoolWallet {
 
   private void autoRefill(EmptyWalletException e) throws Exception {
     long requiredBalance = e.getBalanceRequired();
-    Bip84ApiWallet depositWallet = getWalletDeposit();
-    Bip84ApiWallet premixWallet = getWalletPremix();
-    Bip84ApiWallet postmixWallet = getWalletPostmix();
 
     // check total balance
-    long depositBalance = depositWallet.fetchBalance();
-    long premixBalance = premixWallet.fetchBalance();
-    long postmixBalance = postmixWallet.fetchBalance();
-    long totalBalance = depositBalance + premixBalance + postmixBalance;
+    WalletSnapshot snapshot = walletSnapshotService.fetch(this);
+    long totalBalance = snapshot.getTotalBalance();
     if (log.isDebugEnabled()) {
-      log.debug("depositBalance=" + depositBalance);
-      log.debug("premixBalance=" + premixBalance);
-      log.debug("postmixBalance=" + postmixBalance);
+      log.debug("depositBalance=" + snapshot.getDepositBalance());
+      log.debug("premixBalance=" + snapshot.getPremixBalance());
+      log.debug("postmixBalance=" + snapshot.getPostmixBalance());
       log.debug("totalBalance=" + totalBalance);
     }
 
@@ -126,7 +126,7 @@ public class CliWallet extends WhirlpoolWallet {
     log.info(" o AutoAggregatePostmix: depositWallet wallet is empty => aggregating");
     Exception aggregateException = null;
     try {
-      boolean success = walletAggregateService.consolidateWallet(this);
+      boolean success = walletAggregateService.consolidateWallet(this, snapshot);
       if (!success) {
         throw new NotifiableException("AutoAggregatePostmix failed (nothing to aggregate?)");
       }
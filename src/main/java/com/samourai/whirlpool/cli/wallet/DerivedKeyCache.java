@@ -0,0 +1,108 @@
+package com.samourai.whirlpool.cli.wallet;
+
+import com.samourai.wallet.hd.HD_Address;
+import java.util.Arrays;
+import org.bitcoinj.core.ECKey;
+
+/**
+ * Child keys already derived for one account, indexed by (chain, index) in plain arrays which grow
+ * up to maxIndex. Keys beyond maxIndex are not cached.
+ */
+public class DerivedKeyCache {
+  private static final int NB_CHAINS = 2; // receive, change
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final int maxIndex;
+  private final DerivedKey[][] keys;
+  private int size;
+
+  public DerivedKeyCache(int maxIndex) {
+    this.maxIndex = maxIndex;
+    this.keys = new DerivedKey[NB_CHAINS][];
+    this.size = 0;
+  }
+
+  public synchronized DerivedKey get(int chain, int index) {
+    if (!isCacheable(chain, index)) {
+      return null;
+    }
+    DerivedKey[] chainKeys = keys[chain];
+    if (chainKeys == null || index >= chainKeys.length) {
+      return null;
+    }
+    return chainKeys[index];
+  }
+
+  public synchronized void put(int chain, int index, DerivedKey derivedKey) {
+    if (!isCacheable(chain, index)) {
+      return;
+    }
+    DerivedKey[] chainKeys = keys[chain];
+    if (chainKeys == null || index >= chainKeys.length) {
+      int capacity = chainKeys != null ? chainKeys.length : INITIAL_CAPACITY;
+      while (capacity <= index) {
+        capacity *= 2;
+      }
+      capacity = Math.min(capacity, maxIndex + 1);
+      chainKeys = chainKeys != null ? Arrays.copyOf(chainKeys, capacity) : new DerivedKey[capacity];
+      keys[chain] = chainKeys;
+    }
+    if (chainKeys[index] == null) {
+      size++;
+    }
+    chainKeys[index] = derivedKey;
+  }
+
+  /**
+   * Release cached keys. Key material is not overwritten: ECKey private keys are immutable
+   * BigIntegers, they are only left to garbage collection.
+   */
+  public synchronized void clear() {
+    for (DerivedKey[] chainKeys : keys) {
+      if (chainKeys != null) {
+        Arrays.fill(chainKeys, null);
+      }
+    }
+    Arrays.fill(keys, null);
+    size = 0;
+  }
+
+  public synchronized int getSize() {
+    return size;
+  }
+
+  private boolean isCacheable(int chain, int index) {
+    return chain >= 0 && chain < NB_CHAINS && index >= 0 && index <= maxIndex;
+  }
+
+  /** Derived child key with its bech32 address and path. */
+  public static class DerivedKey {
+    private HD_Address address;
+    private ECKey ecKey;
+    private String bech32Address;
+    private String path;
+
+    public DerivedKey(HD_Address address, ECKey ecKey, String bech32Address, String path) {
+      this.address = address;
+      this.ecKey = ecKey;
+      this.bech32Address = bech32Address;
+      this.path = path;
+    }
+
+    public HD_Address getAddress() {
+      return address;
+    }
+
+    public ECKey getECKey() {
+      return ecKey;
+    }
+
+    public String getBech32Address() {
+      return bech32Address;
+    }
+
+    public String getPath() {
+      return path;
+    }
+  }
+}
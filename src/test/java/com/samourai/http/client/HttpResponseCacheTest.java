@@ -0,0 +1,115 @@
+package com.samourai.http.client;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpResponseCacheTest {
+  private static final String URL_FEES = "https://backend/v2/fees";
+  private static final String URL_POOLS = "https://server/rest/pools";
+
+  private HttpResponseCache computeCache(long maxBytes, long ttl) {
+    return new HttpResponseCache(
+        maxBytes,
+        Arrays.asList(
+            new HttpResponseCache.Policy("/fees", ttl),
+            new HttpResponseCache.Policy("/rest/pools", ttl)));
+  }
+
+  private CompletableFuture<HttpResponseCache.Response> response(
+      int status, byte[] content, String etag) {
+    return CompletableFuture.completedFuture(new HttpResponseCache.Response(status, content, etag));
+  }
+
+  private byte[] get(HttpResponseCache cache, String url, HttpResponseCache.AsyncFetcher fetcher)
+      throws Exception {
+    return cache.getAsync(url, fetcher).get();
+  }
+
+  @Test
+  public void testHitMiss() throws Exception {
+    HttpResponseCache cache = computeCache(1000, 60000);
+    AtomicInteger nbFetchs = new AtomicInteger();
+    HttpResponseCache.AsyncFetcher fetcher =
+        ifNoneMatch -> {
+          nbFetchs.incrementAndGet();
+          return response(200, "fees".getBytes(), null);
+        };
+
+    Assert.assertEquals("fees", new String(get(cache, URL_FEES, fetcher)));
+    Assert.assertEquals("fees", new String(get(cache, URL_FEES, fetcher)));
+    Assert.assertEquals(1, nbFetchs.get());
+    Assert.assertEquals(1, cache.getNbHits());
+    Assert.assertEquals(1, cache.getNbMisses());
+
+    // not cacheable
+    get(cache, "https://backend/v2/pushtx", fetcher);
+    get(cache, "https://backend/v2/pushtx", fetcher);
+    Assert.assertEquals(3, nbFetchs.get());
+    Assert.assertEquals(1, cache.getNbEntries());
+  }
+
+  @Test
+  public void testErrorNotCached() throws Exception {
+    HttpResponseCache cache = computeCache(1000, 60000);
+    HttpResponseCache.AsyncFetcher fetcher = ifNoneMatch -> response(500, "error".getBytes(), null);
+
+    get(cache, URL_FEES, fetcher);
+    Assert.assertEquals(0, cache.getNbEntries());
+  }
+
+  @Test
+  public void testRevalidate() throws Exception {
+    HttpResponseCache cache = computeCache(1000, 0); // always expired
+    AtomicInteger nbFetchs = new AtomicInteger();
+    HttpResponseCache.AsyncFetcher fetcher =
+        ifNoneMatch -> {
+          nbFetchs.incrementAndGet();
+          if (Optional.of("\"v1\"").equals(ifNoneMatch)) {
+            return response(304, new byte[0], "\"v1\"");
+          }
+          return response(200, "pools".getBytes(), "\"v1\"");
+        };
+
+    Assert.assertEquals("pools", new String(get(cache, URL_POOLS, fetcher)));
+    Assert.assertEquals("pools", new String(get(cache, URL_POOLS, fetcher)));
+    Assert.assertEquals(2, nbFetchs.get());
+    Assert.assertEquals(1, cache.getNbRevalidations());
+    Assert.assertEquals(1, cache.getNbHits());
+  }
+
+  @Test
+  public void testEvictLeastRecentlyUsed() throws Exception {
+    HttpResponseCache cache = computeCache(10, 60000);
+    HttpResponseCache.AsyncFetcher fetcher = ifNoneMatch -> response(200, "12345".getBytes(), null);
+
+    get(cache, URL_FEES + "?a", fetcher);
+    get(cache, URL_FEES + "?b", fetcher);
+    get(cache, URL_FEES + "?a", fetcher); // a is now most recently used
+    get(cache, URL_FEES + "?c", fetcher); // evicts b
+
+    Assert.assertEquals(2, cache.getNbEntries());
+    Assert.assertEquals(10, cache.getNbBytes());
+    Assert.assertEquals(1, cache.getNbEvictions());
+    long nbHits = cache.getNbHits();
+    get(cache, URL_FEES + "?a", fetcher);
+    Assert.assertEquals(nbHits + 1, cache.getNbHits());
+    get(cache, URL_FEES + "?b", fetcher);
+    Assert.assertEquals(nbHits + 1, cache.getNbHits());
+  }
+
+  @Test
+  public void testInvalidateHost() throws Exception {
+    HttpResponseCache cache = computeCache(1000, 60000);
+    HttpResponseCache.AsyncFetcher fetcher = ifNoneMatch -> response(200, "ok".getBytes(), null);
+
+    get(cache, URL_FEES, fetcher);
+    get(cache, URL_POOLS, fetcher);
+    cache.invalidateHost("https://backend/v2/pushtx");
+    Assert.assertEquals(1, cache.getNbEntries());
+    Assert.assertEquals(2, cache.getNbBytes());
+  }
+}
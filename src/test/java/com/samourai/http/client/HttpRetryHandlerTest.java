@@ -0,0 +1,144 @@
+package com.samourai.http.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpRetryHandlerTest {
+  private static final String URL_FEES = "https://backend/v2/fees";
+
+  private HttpRetryHandler computeHandler() {
+    return new HttpRetryHandler(
+        Arrays.asList(new HttpRetryHandler.Policy("/fees", 3, 10, 50, false)));
+  }
+
+  private <T> CompletableFuture<T> failed(Exception e) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(e);
+    return future;
+  }
+
+  @Test
+  public void testRetryTransient() throws Exception {
+    HttpRetryHandler handler = computeHandler();
+    List<Boolean> alternates = new ArrayList<>();
+    CompletableFuture<String> result =
+        handler.execute(
+            URL_FEES,
+            alternate -> {
+              alternates.add(alternate);
+              if (alternates.size() < 3) {
+                return failed(new IOException("circuit closed"));
+              }
+              return CompletableFuture.completedFuture("fees");
+            });
+
+    Assert.assertEquals("fees", result.get(10, TimeUnit.SECONDS));
+    // retries are sent over alternate circuits
+    Assert.assertEquals(Arrays.asList(false, true, true), alternates);
+    Assert.assertEquals(2, handler.getNbRetries());
+  }
+
+  @Test
+  public void testNoRetryPermanent() throws Exception {
+    HttpRetryHandler handler = computeHandler();
+    List<Boolean> alternates = new ArrayList<>();
+    CompletableFuture<String> result =
+        handler.execute(
+            URL_FEES,
+            alternate -> {
+              alternates.add(alternate);
+              return failed(new IllegalArgumentException("invalid"));
+            });
+    try {
+      result.get(10, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException e) {
+      Assert.assertEquals("invalid", e.getCause().getMessage());
+    }
+    Assert.assertEquals(1, alternates.size());
+  }
+
+  @Test
+  public void testMaxAttempts() throws Exception {
+    HttpRetryHandler handler = computeHandler();
+    List<Boolean> alternates = new ArrayList<>();
+    CompletableFuture<String> result =
+        handler.execute(
+            URL_FEES,
+            alternate -> {
+              alternates.add(alternate);
+              return failed(new HttpServerErrorException(503, URL_FEES));
+            });
+    try {
+      result.get(10, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof HttpServerErrorException);
+    }
+    Assert.assertEquals(3, alternates.size());
+
+    // url without policy is not retried
+    alternates.clear();
+    handler
+        .execute(
+            "https://backend/v2/other",
+            alternate -> {
+              alternates.add(alternate);
+              return failed(new IOException("circuit closed"));
+            })
+        .handle((value, e) -> value)
+        .get(10, TimeUnit.SECONDS);
+    Assert.assertEquals(1, alternates.size());
+  }
+
+  @Test
+  public void testHedgeCancelsLoser() throws Exception {
+    HttpRetryHandler handler =
+        new HttpRetryHandler(
+            Arrays.asList(new HttpRetryHandler.Policy("/fees", 1, 10, 50, true)));
+    // fill latencies: hedge after HEDGE_DELAY_MIN
+    for (int i = 0; i < 5; i++) {
+      handler.execute(URL_FEES, alternate -> CompletableFuture.completedFuture("fees")).get();
+    }
+
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+    CompletableFuture<String> result =
+        handler.execute(
+            URL_FEES,
+            alternate -> {
+              // first attempt never completes
+              CompletableFuture<String> attempt = new CompletableFuture<>();
+              if (alternate) {
+                attempt.complete("hedge");
+              }
+              attempts.add(attempt);
+              return attempt;
+            });
+
+    Assert.assertEquals("hedge", result.get(10, TimeUnit.SECONDS));
+    Assert.assertEquals(2, attempts.size());
+    // slow attempt was cancelled
+    Assert.assertTrue(attempts.get(0).isCancelled());
+    Assert.assertEquals(1, handler.getNbHedgeWins());
+  }
+
+  @Test
+  public void testLatencyPercentile() throws Exception {
+    LatencyTracker latencyTracker = new LatencyTracker(100);
+    Assert.assertFalse(latencyTracker.getPercentile(95).isPresent());
+    for (int i = 1; i <= 200; i++) {
+      latencyTracker.add(i);
+    }
+    // only last 100 samples are kept
+    Assert.assertEquals(100, latencyTracker.getNbSamples());
+    Assert.assertEquals(195, (long) latencyTracker.getPercentile(95).get());
+    Assert.assertEquals(101, (long) latencyTracker.getPercentile(0).get());
+  }
+}
@@ -0,0 +1,154 @@
+package com.samourai.http.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SingleFlightTest {
+  private static final int NB_WAITERS = 20;
+
+  @Test
+  public void testSubmitConcurrent() throws Exception {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    AtomicInteger nbNetworkCalls = new AtomicInteger();
+    CompletableFuture<String> networkCall = new CompletableFuture<>();
+
+    ExecutorService executor = Executors.newFixedThreadPool(NB_WAITERS);
+    List<Future<CompletableFuture<String>>> results = new ArrayList<>();
+    for (int i = 0; i < NB_WAITERS; i++) {
+      results.add(
+          executor.submit(
+              () ->
+                  singleFlight.submit(
+                      "/rest/pools",
+                      () -> {
+                        nbNetworkCalls.incrementAndGet();
+                        return networkCall;
+                      })));
+    }
+
+    // wait for all callers to join the call in flight
+    for (Future<CompletableFuture<String>> result : results) {
+      result.get(10, TimeUnit.SECONDS);
+    }
+    Assert.assertEquals(NB_WAITERS - 1, singleFlight.getNbShared());
+    networkCall.complete("pools");
+
+    for (Future<CompletableFuture<String>> result : results) {
+      Assert.assertEquals("pools", result.get().get(10, TimeUnit.SECONDS));
+    }
+    Assert.assertEquals(1, nbNetworkCalls.get());
+    Assert.assertEquals(1, singleFlight.getNbCalls());
+    Assert.assertEquals(0, singleFlight.getNbInFlight());
+    executor.shutdown();
+
+    // next call is not shared with completed one
+    Assert.assertEquals(
+        "fresh",
+        singleFlight
+            .submit("/rest/pools", () -> CompletableFuture.completedFuture("fresh"))
+            .get(10, TimeUnit.SECONDS));
+    Assert.assertEquals(2, singleFlight.getNbCalls());
+  }
+
+  @Test
+  public void testSubmitConcurrentError() throws Exception {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService networkExecutor = Executors.newSingleThreadExecutor();
+
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < NB_WAITERS; i++) {
+      futures.add(
+          singleFlight.submit(
+              "/fees",
+              () ->
+                  CompletableFuture.supplyAsync(
+                      () -> {
+                        try {
+                          release.await();
+                        } catch (InterruptedException e) {
+                          Thread.currentThread().interrupt();
+                        }
+                        throw new IllegalStateException("backend down");
+                      },
+                      networkExecutor)));
+    }
+    release.countDown();
+
+    // all waiters get the same error
+    for (CompletableFuture<String> future : futures) {
+      try {
+        future.get(10, TimeUnit.SECONDS);
+        Assert.fail();
+      } catch (ExecutionException e) {
+        Assert.assertEquals("backend down", e.getCause().getMessage());
+      }
+    }
+    Assert.assertEquals(1, singleFlight.getNbCalls());
+    Assert.assertEquals(0, singleFlight.getNbInFlight());
+    networkExecutor.shutdown();
+  }
+
+  @Test
+  public void testSubmitCallThrows() throws Exception {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    // an Error thrown while starting the call must not leave the key in flight
+    CompletableFuture<String> future =
+        singleFlight.submit(
+            "/fees",
+            () -> {
+              throw new AssertionError("no socks port");
+            });
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException e) {
+      Assert.assertEquals("no socks port", e.getCause().getMessage());
+    }
+    Assert.assertEquals(0, singleFlight.getNbInFlight());
+
+    // next call runs again
+    Assert.assertEquals(
+        "fees",
+        singleFlight
+            .submit("/fees", () -> CompletableFuture.completedFuture("fees"))
+            .get(10, TimeUnit.SECONDS));
+    Assert.assertEquals(2, singleFlight.getNbCalls());
+  }
+
+  @Test
+  public void testSubmit() throws Exception {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    CompletableFuture<String> networkCall = new CompletableFuture<>();
+    AtomicInteger nbNetworkCalls = new AtomicInteger();
+
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < NB_WAITERS; i++) {
+      futures.add(
+          singleFlight.submit(
+              "/fees",
+              () -> {
+                nbNetworkCalls.incrementAndGet();
+                return networkCall;
+              }));
+    }
+    networkCall.complete("fees");
+
+    for (CompletableFuture<String> future : futures) {
+      Assert.assertEquals("fees", future.get(10, TimeUnit.SECONDS));
+    }
+    Assert.assertEquals(1, nbNetworkCalls.get());
+    Assert.assertEquals(0, singleFlight.getNbInFlight());
+  }
+}
@@ -0,0 +1,29 @@
+package com.samourai.stomp.client;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.samourai.whirlpool.cli.utils.JsonRegistry;
+import com.samourai.whirlpool.protocol.rest.RestErrorResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StompMessageTypeRegistryTest {
+  private StompMessageTypeRegistry registry = new StompMessageTypeRegistry(new JsonRegistry(false));
+
+  @Test
+  public void testProtocolType() throws Exception {
+    ObjectReader reader = registry.getReader(RestErrorResponse.class.getName()).get();
+    Assert.assertEquals(RestErrorResponse.class, reader.getValueType().getRawClass());
+
+    // resolved once
+    Assert.assertSame(reader, registry.getReader(RestErrorResponse.class.getName()).get());
+  }
+
+  @Test
+  public void testRejectedType() throws Exception {
+    Assert.assertFalse(registry.getReader(null).isPresent());
+    Assert.assertFalse(registry.getReader("java.lang.Runtime").isPresent());
+    Assert.assertFalse(registry.getReader("com.samourai.whirlpool.protocol.Unknown").isPresent());
+    Assert.assertFalse(
+        registry.getReader("com.samourai.whirlpool.protocol.rest.Unknown").isPresent());
+  }
+}
@@ -0,0 +1,75 @@
+package com.samourai.stomp.client;
+
+import com.samourai.whirlpool.cli.exception.CircuitBreakerOpenException;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StompReconnectManagerTest {
+  private StompTransportStats stats = new StompTransportStats();
+  private StompReconnectManager reconnectManager = new StompReconnectManager(stats, 3, 1, 10);
+
+  @Test
+  public void testReconnect() throws Exception {
+    AtomicInteger nbAttempts = new AtomicInteger();
+    String result =
+        reconnectManager.connect(
+            "url",
+            () -> {
+              if (nbAttempts.incrementAndGet() < 3) {
+                throw new IOException("websocket upgrade failed");
+              }
+              return "connected";
+            });
+    Assert.assertEquals("connected", result);
+    Assert.assertEquals(2, stats.getNbReconnects());
+  }
+
+  @Test
+  public void testMaxAttempts() throws Exception {
+    AtomicInteger nbAttempts = new AtomicInteger();
+    try {
+      reconnectManager.connect(
+          "url",
+          () -> {
+            nbAttempts.incrementAndGet();
+            throw new IOException("connexion refused");
+          });
+      Assert.fail();
+    } catch (IOException e) {
+      // expected
+    }
+    Assert.assertEquals(3, nbAttempts.get());
+  }
+
+  @Test
+  public void testCircuitOpen() throws Exception {
+    AtomicInteger nbAttempts = new AtomicInteger();
+    try {
+      reconnectManager.connect(
+          "url",
+          () -> {
+            nbAttempts.incrementAndGet();
+            throw new CircuitBreakerOpenException("server");
+          });
+      Assert.fail();
+    } catch (CircuitBreakerOpenException e) {
+      // expected
+    }
+    Assert.assertEquals(1, nbAttempts.get());
+  }
+
+  @Test
+  public void testPreferredTransport() throws Exception {
+    Assert.assertFalse(stats.getPreferredTransport("tor").isPresent());
+
+    stats.onFailure("tor", "websocket");
+    stats.onConnect("tor", "xhr", 2000);
+    Assert.assertEquals("xhr", stats.getPreferredTransport("tor").get());
+    Assert.assertFalse(stats.getPreferredTransport("direct").isPresent());
+
+    stats.onFailure("tor", "xhr");
+    Assert.assertEquals("xhr", stats.getPreferredTransport("tor").get());
+  }
+}
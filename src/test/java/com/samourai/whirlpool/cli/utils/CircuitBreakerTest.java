@@ -0,0 +1,88 @@
+package com.samourai.whirlpool.cli.utils;
+
+import com.samourai.whirlpool.cli.exception.CircuitBreakerOpenException;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+  private static final long OPEN_DELAY = 100;
+
+  private void fail(CircuitBreaker circuitBreaker) {
+    try {
+      circuitBreaker.execute(
+          () -> {
+            throw new IOException("connexion refused");
+          });
+      Assert.fail();
+    } catch (Exception e) {
+      // expected
+    }
+  }
+
+  private void assertRejected(CircuitBreaker circuitBreaker) throws Exception {
+    try {
+      circuitBreaker.execute(() -> "ok");
+      Assert.fail();
+    } catch (CircuitBreakerOpenException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testOpenHalfOpenClose() throws Exception {
+    CircuitBreaker circuitBreaker = new CircuitBreaker("backend", 3, OPEN_DELAY);
+    fail(circuitBreaker);
+    fail(circuitBreaker);
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    fail(circuitBreaker);
+    Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    Assert.assertEquals(1, circuitBreaker.getNbTrips());
+
+    // fail fast
+    assertRejected(circuitBreaker);
+    Assert.assertEquals(1, circuitBreaker.getNbRejected());
+
+    // single probe after openDelay
+    Thread.sleep(OPEN_DELAY * 2);
+    circuitBreaker.checkAllowed();
+    Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    assertRejected(circuitBreaker);
+    circuitBreaker.onSuccess();
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    Assert.assertEquals("ok", circuitBreaker.execute(() -> "ok"));
+  }
+
+  @Test
+  public void testProbeFailure() throws Exception {
+    CircuitBreaker circuitBreaker = new CircuitBreaker("backend", 1, OPEN_DELAY);
+    fail(circuitBreaker);
+    Thread.sleep(OPEN_DELAY * 2);
+
+    // failed probe opens circuit again
+    fail(circuitBreaker);
+    Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    Assert.assertEquals(2, circuitBreaker.getNbTrips());
+    assertRejected(circuitBreaker);
+  }
+
+  @Test
+  public void testHostErrorIsNotFailure() throws Exception {
+    CircuitBreaker circuitBreaker = new CircuitBreaker("node", 1, OPEN_DELAY);
+    CompletableFuture<String> hostError = new CompletableFuture<>();
+    hostError.completeExceptionally(new IllegalArgumentException("invalid tx"));
+
+    CompletableFuture<String> result =
+        circuitBreaker.executeAsync(() -> hostError, e -> CircuitBreaker.isNetworkFailure(e));
+    try {
+      result.get();
+      Assert.fail();
+    } catch (ExecutionException e) {
+      Assert.assertEquals("invalid tx", e.getCause().getMessage());
+    }
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    Assert.assertEquals(0, circuitBreaker.getNbFailures());
+  }
+}
@@ -0,0 +1,140 @@
+package com.samourai.whirlpool.cli.utils;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samourai.wallet.api.backend.beans.UnspentResponse;
+import com.samourai.whirlpool.cli.api.protocol.rest.ApiWalletUtxosResponse;
+import com.samourai.whirlpool.client.wallet.WhirlpoolWallet;
+import com.samourai.whirlpool.client.wallet.beans.MixableStatus;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolAccount;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxo;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxoStatus;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares ObjectMapper calls (as before JsonRegistry) with cached readers/writers, with and
+ * without Afterburner. Not run by tests, run main() from test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonRegistryBenchmark {
+  private static final int NB_UTXOS = 500;
+
+  @Param({"false", "true"})
+  public boolean afterburner;
+
+  private ObjectMapper objectMapper;
+  private JsonRegistry jsonRegistry;
+  private byte[] unspentJson;
+  private ApiWalletUtxosResponse utxosResponse;
+
+  @Setup
+  public void setup() throws Exception {
+    objectMapper = new ObjectMapper();
+    objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    jsonRegistry = new JsonRegistry(afterburner);
+
+    // backend /unspent response
+    StringBuilder sb = new StringBuilder("{\"unspent_outputs\":[");
+    for (int i = 0; i < NB_UTXOS; i++) {
+      if (i > 0) {
+        sb.append(",");
+      }
+      sb.append("{\"tx_hash\":\"")
+          .append(String.format("%064x", i))
+          .append("\",\"tx_output_n\":")
+          .append(i % 5)
+          .append(",\"value\":")
+          .append(1000000 + i)
+          .append(",\"confirmations\":")
+          .append(i % 100)
+          .append(",\"script\":\"0014")
+          .append(String.format("%040x", i))
+          .append("\",\"xpub\":{\"m\":\"zpub\",\"path\":\"M/0/")
+          .append(i)
+          .append("\"}}");
+    }
+    sb.append("],\"info\":{\"latest_block\":{\"height\":600000}}}");
+    unspentJson = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+    // REST /wallet/utxos response
+    List<UnspentResponse.UnspentOutput> utxos = new ArrayList<>();
+    for (JsonNode utxoNode : objectMapper.readTree(unspentJson).get("unspent_outputs")) {
+      utxos.add(objectMapper.treeToValue(utxoNode, UnspentResponse.UnspentOutput.class));
+    }
+    WhirlpoolAccount[] accounts = WhirlpoolAccount.values();
+    WhirlpoolWallet whirlpoolWallet = Mockito.mock(WhirlpoolWallet.class);
+    Mockito.doReturn(mockUtxos(utxos, accounts[0])).when(whirlpoolWallet).getUtxosDeposit();
+    Mockito.doReturn(mockUtxos(utxos, accounts[1])).when(whirlpoolWallet).getUtxosPremix();
+    Mockito.doReturn(mockUtxos(utxos, accounts[2])).when(whirlpoolWallet).getUtxosPostmix();
+    Mockito.doReturn("zpub").when(whirlpoolWallet).getZpubDeposit();
+    Mockito.doReturn("zpub").when(whirlpoolWallet).getZpubPremix();
+    Mockito.doReturn("zpub").when(whirlpoolWallet).getZpubPostmix();
+    utxosResponse = new ApiWalletUtxosResponse(whirlpoolWallet);
+  }
+
+  private List<WhirlpoolUtxo> mockUtxos(
+      List<UnspentResponse.UnspentOutput> utxos, WhirlpoolAccount account) {
+    List<WhirlpoolUtxo> whirlpoolUtxos = new ArrayList<>();
+    for (int i = 0; i < utxos.size(); i++) {
+      UnspentResponse.UnspentOutput utxo = utxos.get(i);
+      WhirlpoolUtxo whirlpoolUtxo = Mockito.mock(WhirlpoolUtxo.class, Mockito.RETURNS_DEEP_STUBS);
+      Mockito.doReturn(utxo).when(whirlpoolUtxo).getUtxo();
+      Mockito.doReturn(account).when(whirlpoolUtxo).getAccount();
+      Mockito.doReturn(WhirlpoolUtxoStatus.values()[0]).when(whirlpoolUtxo).getStatus();
+      Mockito.doReturn(MixableStatus.values()[0]).when(whirlpoolUtxo).getMixableStatus();
+      Mockito.when(whirlpoolUtxo.getUtxoConfig().getPoolId()).thenReturn("0.01btc");
+      Mockito.when(whirlpoolUtxo.getUtxoConfig().getMixsTarget()).thenReturn(5);
+      Mockito.when(whirlpoolUtxo.getUtxoConfig().getMixsDone()).thenReturn(i % 5);
+      whirlpoolUtxos.add(whirlpoolUtxo);
+    }
+    return whirlpoolUtxos;
+  }
+
+  @Benchmark
+  public Object readUnspentObjectMapper() throws Exception {
+    return objectMapper.readValue(unspentJson, UnspentResponse.class);
+  }
+
+  @Benchmark
+  public Object readUnspentRegistry() throws Exception {
+    return jsonRegistry.getReader(UnspentResponse.class).readValue(unspentJson);
+  }
+
+  @Benchmark
+  public byte[] writeUtxosObjectMapper() throws Exception {
+    return objectMapper.writeValueAsBytes(utxosResponse);
+  }
+
+  @Benchmark
+  public byte[] writeUtxosRegistry() throws Exception {
+    return jsonRegistry.getWriter(ApiWalletUtxosResponse.class).writeValueAsBytes(utxosResponse);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(JsonRegistryBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
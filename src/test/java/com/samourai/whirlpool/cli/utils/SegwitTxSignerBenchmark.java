@@ -0,0 +1,63 @@
+package com.samourai.whirlpool.cli.utils;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares previous sequential signing (TxUtil, with input index lookup) with SegwitTxSigner. Not
+ * run by tests, run main() from test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegwitTxSignerBenchmark {
+  @Param({"50", "200", "600"})
+  public int nbInputs;
+
+  private List<ECKey> keys;
+  private Transaction tx;
+  private SegwitTxSigner txSigner;
+
+  @Setup
+  public void setup() throws Exception {
+    keys = SegwitTxSignerTest.computeKeys(nbInputs);
+    tx = SegwitTxSignerTest.computeTx(keys);
+    txSigner = new SegwitTxSigner(ForkJoinPool.commonPool());
+  }
+
+  @Benchmark
+  public Transaction signSequential() {
+    SegwitTxSignerTest.signSequential(tx, keys);
+    return tx;
+  }
+
+  @Benchmark
+  public Transaction signParallel() throws Exception {
+    txSigner.sign(tx, keys);
+    return tx;
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(SegwitTxSignerBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
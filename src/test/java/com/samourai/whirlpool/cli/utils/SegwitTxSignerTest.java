@@ -0,0 +1,101 @@
+package com.samourai.whirlpool.cli.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samourai.wallet.api.backend.beans.UnspentResponse;
+import com.samourai.wallet.util.TxUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.params.TestNet3Params;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SegwitTxSignerTest {
+  private static final NetworkParameters params = TestNet3Params.get();
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private SegwitTxSigner txSigner = new SegwitTxSigner(ForkJoinPool.commonPool());
+
+  @Test
+  public void testSameAsSequential() throws Exception {
+    for (int nbInputs : new int[] {1, 20}) {
+      List<ECKey> keys = computeKeys(nbInputs);
+
+      Transaction tx = computeTx(keys);
+      txSigner.sign(tx, keys);
+
+      Transaction txSequential = computeTx(keys);
+      signSequential(txSequential, keys);
+
+      // deterministic signatures (RFC6979)
+      Assert.assertEquals(
+          Hex.toHexString(txSequential.bitcoinSerialize()), Hex.toHexString(tx.bitcoinSerialize()));
+      tx.verify();
+    }
+  }
+
+  @Test
+  public void testKeysMismatch() throws Exception {
+    List<ECKey> keys = computeKeys(2);
+    try {
+      txSigner.sign(computeTx(keys), keys.subList(0, 1));
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  protected static List<ECKey> computeKeys(int nbInputs) {
+    List<ECKey> keys = new ArrayList<>();
+    for (int i = 0; i < nbInputs; i++) {
+      keys.add(new ECKey());
+    }
+    return keys;
+  }
+
+  protected static Transaction computeTx(List<ECKey> keys) throws Exception {
+    Transaction tx = new Transaction(params);
+    tx.addOutput(Coin.valueOf(keys.size() * 100000), new ECKey());
+    for (int i = 0; i < keys.size(); i++) {
+      ECKey key = keys.get(i);
+      String utxoJson =
+          "{\"tx_hash\":\""
+              + Sha256Hash.of(key.getPubKey())
+              + "\",\"tx_output_n\":"
+              + (i % 3)
+              + ",\"value\":"
+              + (110000 + i)
+              + ",\"script\":\"0014"
+              + Hex.toHexString(key.getPubKeyHash())
+              + "\",\"confirmations\":10,\"xpub\":{\"m\":\"zpub\",\"path\":\"M/0/"
+              + i
+              + "\"}}";
+      UnspentResponse.UnspentOutput utxo =
+          objectMapper.readValue(utxoJson, UnspentResponse.UnspentOutput.class);
+      TransactionOutPoint outPoint = utxo.computeOutpoint(params);
+      tx.addInput(
+          new TransactionInput(params, null, new byte[] {}, outPoint, outPoint.getValue()));
+    }
+    return tx;
+  }
+
+  // previous signing path
+  protected static void signSequential(Transaction tx, List<ECKey> keys) {
+    for (int i = 0; i < keys.size(); i++) {
+      TransactionInput txInput = tx.getInput(i);
+      TransactionOutPoint txo = txInput.getOutpoint();
+      int inputIndex =
+          TxUtil.getInstance().findInputIndex(tx, txo.getHash().toString(), txo.getIndex());
+      TxUtil.getInstance()
+          .signInputSegwit(tx, inputIndex, keys.get(i), txInput.getValue().getValue(), params);
+    }
+  }
+}
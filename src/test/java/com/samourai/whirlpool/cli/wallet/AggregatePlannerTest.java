@@ -0,0 +1,128 @@
+package com.samourai.whirlpool.cli.wallet;
+
+import com.samourai.wallet.api.backend.beans.UnspentResponse;
+import com.samourai.whirlpool.cli.beans.AggregatePlan;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AggregatePlannerTest {
+  private static final long FEE_SAT_PER_BYTE = 10; // 680 sats per input
+
+  private List<UnspentResponse.UnspentOutput> computeUtxos(int nbUtxos, long value) {
+    List<UnspentResponse.UnspentOutput> utxos = new ArrayList<>();
+    for (int i = 0; i < nbUtxos; i++) {
+      UnspentResponse.UnspentOutput utxo = new UnspentResponse.UnspentOutput();
+      utxo.value = value + i;
+      utxos.add(utxo);
+    }
+    return utxos;
+  }
+
+  @Test
+  public void testWeight() throws Exception {
+    // 1 input, 1 output: 110 vB
+    Assert.assertEquals(438, AggregatePlanner.computeWeight(1));
+    // inputs count varint grows
+    Assert.assertEquals(
+        AggregatePlanner.computeWeight(252) + 272 + 8, AggregatePlanner.computeWeight(253));
+
+    // a child of a full batch fits ancestor limit
+    int maxInputs = new AggregatePlanner().computeMaxInputs();
+    int maxWeight = AggregatePlanner.MAX_ANCESTORS_WEIGHT / 2;
+    Assert.assertTrue(AggregatePlanner.computeWeight(maxInputs) < maxWeight);
+    Assert.assertTrue(AggregatePlanner.computeWeight(maxInputs + 1) >= maxWeight);
+  }
+
+  @Test
+  public void testBatches() throws Exception {
+    AggregatePlanner planner = new AggregatePlanner();
+    int maxInputs = planner.computeMaxInputs();
+    List<UnspentResponse.UnspentOutput> utxos = computeUtxos(maxInputs * 2 + 10, 100000);
+
+    AggregatePlan plan = planner.plan(utxos, FEE_SAT_PER_BYTE);
+    Assert.assertEquals(3, plan.getBatches().size());
+    Assert.assertEquals(maxInputs, plan.getBatches().get(0).getUtxos().size());
+    Assert.assertEquals(10, plan.getBatches().get(2).getUtxos().size());
+    Assert.assertTrue(plan.getDust().isEmpty());
+
+    // largest utxos first
+    Assert.assertEquals(
+        100000 + utxos.size() - 1, plan.getBatches().get(0).getUtxos().get(0).value);
+
+    AggregatePlan.Batch batch = plan.getBatches().get(2);
+    Assert.assertEquals(batch.getVsize() * FEE_SAT_PER_BYTE, batch.getFee());
+    Assert.assertEquals(batch.getValue() - batch.getFee(), batch.getDestinationValue());
+  }
+
+  @Test
+  public void testUnconfirmedParents() throws Exception {
+    AggregatePlanner planner = new AggregatePlanner();
+    int fullBatchWeight = AggregatePlanner.computeWeight(planner.computeMaxInputs());
+
+    // outputs of 3 full aggregate txs, not confirmed yet
+    List<UnspentResponse.UnspentOutput> utxos = computeUtxos(3, 10000000);
+    Map<String, Integer> unconfirmedParents = new HashMap<>();
+    for (int i = 0; i < utxos.size(); i++) {
+      utxos.get(i).tx_hash = "parent" + i;
+      unconfirmedParents.put(utxos.get(i).tx_hash, fullBatchWeight);
+    }
+    utxos.addAll(computeUtxos(100, 100000));
+
+    AggregatePlan plan = planner.plan(utxos, FEE_SAT_PER_BYTE, unconfirmedParents);
+    Assert.assertEquals(3, plan.getBatches().size());
+    for (AggregatePlan.Batch batch : plan.getBatches()) {
+      int ancestorsWeight =
+          batch
+              .getUtxos()
+              .stream()
+              .mapToInt(utxo -> unconfirmedParents.getOrDefault(utxo.tx_hash, 0))
+              .sum();
+      Assert.assertEquals(fullBatchWeight, ancestorsWeight);
+      Assert.assertTrue(
+          ancestorsWeight + batch.getWeight() <= AggregatePlanner.MAX_ANCESTORS_WEIGHT);
+    }
+    Assert.assertEquals(103, plan.getBatches().stream().mapToInt(b -> b.getUtxos().size()).sum());
+  }
+
+  @Test
+  public void testUnconfirmedParentsCount() throws Exception {
+    List<UnspentResponse.UnspentOutput> utxos = computeUtxos(30, 100000);
+    Map<String, Integer> unconfirmedParents = new HashMap<>();
+    for (int i = 0; i < utxos.size(); i++) {
+      utxos.get(i).tx_hash = "parent" + i;
+      unconfirmedParents.put(utxos.get(i).tx_hash, 1000);
+    }
+
+    // 25 txs max with ancestors
+    AggregatePlan plan = new AggregatePlanner().plan(utxos, FEE_SAT_PER_BYTE, unconfirmedParents);
+    Assert.assertEquals(2, plan.getBatches().size());
+    Assert.assertEquals(24, plan.getBatches().get(0).getUtxos().size());
+    Assert.assertEquals(6, plan.getBatches().get(1).getUtxos().size());
+  }
+
+  @Test
+  public void testDust() throws Exception {
+    List<UnspentResponse.UnspentOutput> utxos = computeUtxos(3, 100000);
+    utxos.addAll(computeUtxos(2, 600)); // 600-601 sats < 680 sats to spend
+
+    AggregatePlan plan = new AggregatePlanner().plan(utxos, FEE_SAT_PER_BYTE);
+    Assert.assertEquals(1, plan.getBatches().size());
+    Assert.assertEquals(3, plan.getBatches().get(0).getUtxos().size());
+    Assert.assertEquals(2, plan.getDust().size());
+    Assert.assertEquals(1201, plan.getDustValue());
+  }
+
+  @Test
+  public void testDustOutput() throws Exception {
+    // 2 utxos worth spending, but output would be dust
+    List<UnspentResponse.UnspentOutput> utxos = computeUtxos(2, 700);
+
+    AggregatePlan plan = new AggregatePlanner().plan(utxos, FEE_SAT_PER_BYTE);
+    Assert.assertTrue(plan.getBatches().isEmpty());
+    Assert.assertEquals(2, plan.getDust().size());
+  }
+}
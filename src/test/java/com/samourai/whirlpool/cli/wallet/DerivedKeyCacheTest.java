@@ -0,0 +1,54 @@
+package com.samourai.whirlpool.cli.wallet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DerivedKeyCacheTest {
+
+  private DerivedKeyCache.DerivedKey computeDerivedKey(String path) {
+    return new DerivedKeyCache.DerivedKey(null, null, null, path);
+  }
+
+  @Test
+  public void testGetPut() throws Exception {
+    DerivedKeyCache cache = new DerivedKeyCache(1000);
+    Assert.assertNull(cache.get(0, 5));
+
+    cache.put(0, 5, computeDerivedKey("M/0/5"));
+    cache.put(1, 5, computeDerivedKey("M/1/5"));
+    cache.put(0, 500, computeDerivedKey("M/0/500")); // grows
+    Assert.assertEquals("M/0/5", cache.get(0, 5).getPath());
+    Assert.assertEquals("M/1/5", cache.get(1, 5).getPath());
+    Assert.assertEquals("M/0/500", cache.get(0, 500).getPath());
+    Assert.assertNull(cache.get(1, 500));
+    Assert.assertEquals(3, cache.getSize());
+
+    // replace
+    cache.put(0, 5, computeDerivedKey("M/0/5"));
+    Assert.assertEquals(3, cache.getSize());
+  }
+
+  @Test
+  public void testBounds() throws Exception {
+    DerivedKeyCache cache = new DerivedKeyCache(100);
+    cache.put(0, 100, computeDerivedKey("M/0/100"));
+    cache.put(0, 101, computeDerivedKey("M/0/101"));
+    cache.put(2, 0, computeDerivedKey("M/2/0"));
+    cache.put(-1, -1, computeDerivedKey(null));
+
+    Assert.assertEquals("M/0/100", cache.get(0, 100).getPath());
+    Assert.assertNull(cache.get(0, 101));
+    Assert.assertNull(cache.get(2, 0));
+    Assert.assertNull(cache.get(-1, -1));
+    Assert.assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    DerivedKeyCache cache = new DerivedKeyCache(100);
+    cache.put(0, 1, computeDerivedKey("M/0/1"));
+    cache.clear();
+    Assert.assertNull(cache.get(0, 1));
+    Assert.assertEquals(0, cache.getSize());
+  }
+}